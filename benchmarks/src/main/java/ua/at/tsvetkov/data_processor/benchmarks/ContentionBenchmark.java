@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.DataProcessorConfiguration;
+import ua.at.tsvetkov.data_processor.requests.GetRequest;
+
+/**
+ * Blocking DataProcessor.execute from 8 threads against the loopback server: the current facade without the monitor against the same
+ * calls serialized by one lock, as the former synchronized facade did.
+ *
+ * @author lordtao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ContentionBenchmark {
+
+   private static final int SIZE = 4 * 1024;
+
+   private final Object facadeLock = new Object();
+
+   private LoopbackServer server;
+   private String         url;
+
+   @Setup
+   public void setUp() throws Exception {
+      server = LoopbackServer.start();
+      url = server.getJsonUrl(SIZE);
+      DataProcessor.getInstance().init(DataProcessorConfiguration.getBuilder()
+              .setHost(server.getUrl())
+              .setLogEnabled(false)
+              .setRequestCoalescingEnabled(false)
+              .build());
+   }
+
+   @TearDown
+   public void tearDown() {
+      DataProcessor.getInstance().shutdownNow();
+      server.stop();
+   }
+
+   @Benchmark
+   public Items lockFreeFacade() {
+      return DataProcessor.getInstance().execute(GetRequest.newInstance().setUrl(url).build(), Items.class);
+   }
+
+   @Benchmark
+   public Items synchronizedFacade() {
+      synchronized (facadeLock) {
+         return DataProcessor.getInstance().execute(GetRequest.newInstance().setUrl(url).build(), Items.class);
+      }
+   }
+
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.DataProcessorConfiguration;
+import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.processors.Processor;
+import ua.at.tsvetkov.data_processor.requests.GetRequest;
+import ua.at.tsvetkov.data_processor.threads.ParserThreadPool;
+
+/**
+ * DataProcessor.executeAsync against the loopback server: one operation is the batch of requests submitted at once and awaited. The
+ * "small" batch measures the dispatch overhead, the "mixed" batch of large and small responses measures the effect of the parsing on the
+ * separate CPU sized pool ({@code parserThreads} > 0) against the parsing in the I/O threads ({@code parserThreads} = 0). The large
+ * responses are measured on both sides of the default 512 KB parser buffer limit ({@code largeSize}): the smaller one is read ahead and
+ * handed off whole, the larger one is parsed by the I/O thread while it is downloaded.
+ *
+ * @author lordtao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+public class DispatchBenchmark {
+
+   private static final int BATCH       = 64;
+   private static final int LARGE_EVERY = 8;
+   private static final int SMALL_SIZE  = 1024;
+
+   @Param({"0", "-1"})
+   public int parserThreads;
+
+   private LoopbackServer server;
+   private String         smallUrl;
+
+   @Setup
+   public void setUp() throws Exception {
+      server = LoopbackServer.start();
+      smallUrl = server.getJsonUrl(SMALL_SIZE);
+      DataProcessor.getInstance().init(DataProcessorConfiguration.getBuilder()
+              .setHost(server.getUrl())
+              .setLogEnabled(false)
+              .setRequestCoalescingEnabled(false)
+              .setThreadPoolQueueCapacity(BATCH * 2)
+              .setParserThreadPoolSize(parserThreads < 0 ? ParserThreadPool.DEFAULT_POOL_SIZE : parserThreads)
+              .build());
+   }
+
+   @TearDown
+   public void tearDown() {
+      DataProcessor.getInstance().shutdownNow();
+      server.stop();
+   }
+
+   @Benchmark
+   public int small() throws Exception {
+      return runBatch(0, null);
+   }
+
+   @Benchmark
+   public int mixed(LargeBody large) throws Exception {
+      return runBatch(LARGE_EVERY, server.getJsonUrl(large.largeSize));
+   }
+
+   private int runBatch(int largeEvery, String largeUrl) throws Exception {
+      final CountDownLatch latch = new CountDownLatch(BATCH);
+      final AtomicInteger succeeded = new AtomicInteger();
+      Processor.Callback<Items> callback = new Processor.Callback<Items>() {
+
+         @Override
+         public void onFinish(Items obj, int statusCode, String errMessage) {
+            if (statusCode == ConnectionConstants.HTTP_OK && obj != null) {
+               succeeded.incrementAndGet();
+            }
+            latch.countDown();
+         }
+
+      };
+      for (int i = 0; i < BATCH; i++) {
+         String url = largeEvery > 0 && i % largeEvery == 0 ? largeUrl : smallUrl;
+         DataProcessor.getInstance().executeAsync(GetRequest.newInstance().setUrl(url).build(), Items.class, callback);
+      }
+      latch.await();
+      if (succeeded.get() != BATCH) {
+         throw new IllegalStateException("Failed requests: " + (BATCH - succeeded.get()));
+      }
+      return succeeded.get();
+   }
+
+   /**
+    * Size of the large responses of the "mixed" batch, below and above the default parser buffer limit.
+    */
+   @State(Scope.Benchmark)
+   public static class LargeBody {
+
+      @Param({"262144", "2097152"})
+      public int largeSize;
+
+   }
+
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ua.at.tsvetkov.data_processor.templates.JSONDataAbstract;
+
+/**
+ * {@link Payloads} document parsed with the org.json DOM.
+ *
+ * @author lordtao
+ */
+public class Items extends JSONDataAbstract {
+
+   public long idSum;
+   public int  count;
+
+   public Items() {
+      setShowObjectInLog(false);
+   }
+
+   @Override
+   public void parse(JSONObject jsonObject) throws Exception {
+      setSuccess(jsonObject.getBoolean("success"));
+      JSONArray items = jsonObject.getJSONArray("items");
+      for (int i = 0; i < items.length(); i++) {
+         JSONObject item = items.getJSONObject(i);
+         idSum += item.getLong("id");
+         item.getString("name");
+         item.getDouble("price");
+         count++;
+      }
+   }
+
+   @Override
+   public void parse(JSONArray jsonArray) throws Exception {
+   }
+
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process HTTP server on the loopback interface. GET /json?size=N returns the {@link Payloads} document of N bytes, the documents are
+ * generated once and cached.
+ *
+ * @author lordtao
+ */
+public final class LoopbackServer {
+
+   private static final String SIZE    = "size=";
+   private static final String NODELAY = "sun.net.httpserver.nodelay";
+
+   private final HttpServer                          server;
+   private final ExecutorService                     executor = Executors.newCachedThreadPool();
+   private final ConcurrentHashMap<Integer, byte[]> payloads = new ConcurrentHashMap<>();
+
+   private LoopbackServer() throws IOException {
+      // Without TCP_NODELAY the delayed ACK of the loopback adds ~40 ms to every response and hides the cost of the dispatch and parsing
+      System.setProperty(NODELAY, "true");
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+      server.createContext("/json", new HttpHandler() {
+
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            byte[] body = getPayload(parseSize(exchange.getRequestURI().getRawQuery()));
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            try {
+               out.write(body);
+            } finally {
+               out.close();
+            }
+         }
+
+      });
+      server.setExecutor(executor);
+      server.start();
+   }
+
+   public static LoopbackServer start() throws IOException {
+      return new LoopbackServer();
+   }
+
+   /**
+    * Returns the server address like http://127.0.0.1:port without the trailing slash.
+    *
+    * @return server url
+    */
+   public String getUrl() {
+      return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort();
+   }
+
+   /**
+    * Returns the url of the JSON document of the given size.
+    *
+    * @param size document size in bytes
+    * @return document url
+    */
+   public String getJsonUrl(int size) {
+      return getUrl() + "/json?" + SIZE + size;
+   }
+
+   public void stop() {
+      server.stop(0);
+      executor.shutdownNow();
+   }
+
+   private byte[] getPayload(int size) {
+      byte[] payload = payloads.get(size);
+      if (payload == null) {
+         payload = Payloads.jsonBytes(size);
+         payloads.put(size, payload);
+      }
+      return payload;
+   }
+
+   private static int parseSize(String query) {
+      if (query != null) {
+         for (String param : query.split("&")) {
+            if (param.startsWith(SIZE)) {
+               return Integer.parseInt(param.substring(SIZE.length()));
+            }
+         }
+      }
+      return 1024;
+   }
+
+}
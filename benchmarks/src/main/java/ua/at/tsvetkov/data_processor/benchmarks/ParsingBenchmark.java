@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.DataProcessorConfiguration;
+import ua.at.tsvetkov.data_processor.processors.InputStreamProcessor;
+import ua.at.tsvetkov.data_processor.processors.StringProcessor;
+
+/**
+ * Parsing of the JSON response: the string decoding by StringAbstractProcessor, the org.json DOM binding of JSONDataAbstract and the
+ * streaming binding of JSONStreamDataAbstract on 1 KB, 100 KB and 10 MB documents.
+ *
+ * @author lordtao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+public class ParsingBenchmark {
+
+   private static final String UTF_8 = "UTF-8";
+
+   @Param({"1024", "102400", "10485760"})
+   public int size;
+
+   private byte[] payload;
+   private String text;
+
+   @Setup
+   public void setUp() {
+      DataProcessor.getInstance().init(DataProcessorConfiguration.getBuilder()
+              .setHost("localhost")
+              .setLogEnabled(false)
+              .build());
+      payload = Payloads.jsonBytes(size);
+      text = new String(payload, Payloads.UTF_8);
+   }
+
+   /**
+    * StringAbstractProcessor.parse: decoding of the stream into the String only.
+    */
+   @Benchmark
+   public Text decodeString() throws Exception {
+      StringProcessor<Text> processor = new StringProcessor<>(new Text());
+      processor.setEncoding(UTF_8);
+      processor.setContentLength(payload.length);
+      processor.parse(new ByteArrayInputStream(payload));
+      return processor.getResult();
+   }
+
+   /**
+    * JSONDataAbstract.fillFromString: org.json DOM from the already decoded String.
+    */
+   @Benchmark
+   public Items jsonDomFromString() throws Exception {
+      Items items = new Items();
+      items.fillFromString(text);
+      return items;
+   }
+
+   /**
+    * Whole JSONDataAbstract path: stream to String to DOM.
+    */
+   @Benchmark
+   public Items jsonDomFromStream() throws Exception {
+      StringProcessor<Items> processor = new StringProcessor<>(new Items());
+      processor.setEncoding(UTF_8);
+      processor.setContentLength(payload.length);
+      processor.parse(new ByteArrayInputStream(payload));
+      return processor.getResult();
+   }
+
+   /**
+    * JSONStreamDataAbstract: Jackson tokens straight from the stream.
+    */
+   @Benchmark
+   public StreamItems jsonStreaming() throws Exception {
+      InputStreamProcessor<StreamItems> processor = new InputStreamProcessor<>(new StreamItems());
+      processor.parse(new ByteArrayInputStream(payload));
+      return processor.getResult();
+   }
+
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.benchmarks;
+
+import java.nio.charset.Charset;
+
+/**
+ * Generator of JSON payloads of the given size: the root object with the "items" array of small objects.
+ *
+ * @author lordtao
+ */
+public final class Payloads {
+
+   public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+   private Payloads() {
+   }
+
+   /**
+    * Returns the JSON document not shorter than the given size.
+    *
+    * @param size min size in bytes
+    * @return JSON text
+    */
+   public static String json(int size) {
+      StringBuilder sb = new StringBuilder(size + 128);
+      sb.append("{\"success\":true,\"message\":\"OK\",\"items\":[");
+      int id = 0;
+      while (sb.length() < size) {
+         if (id > 0) {
+            sb.append(',');
+         }
+         sb.append("{\"id\":").append(id).append(",\"name\":\"Item \\u2116 ").append(id).append("\",\"price\":").append(id % 100).append(".5,")
+                 .append("\"tags\":[\"new\",\"sale\"],\"available\":").append(id % 2 == 0).append('}');
+         id++;
+      }
+      return sb.append("]}").toString();
+   }
+
+   public static byte[] jsonBytes(int size) {
+      return json(size).getBytes(UTF_8);
+   }
+
+}
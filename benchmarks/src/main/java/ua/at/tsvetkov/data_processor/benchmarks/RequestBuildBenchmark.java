@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.DataProcessorConfiguration;
+import ua.at.tsvetkov.data_processor.requests.GetRequest;
+import ua.at.tsvetkov.data_processor.requests.Request;
+
+/**
+ * Request building and URL assembly.
+ *
+ * @author lordtao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBuildBenchmark {
+
+   @Setup
+   public void setUp() {
+      DataProcessor.getInstance().init(DataProcessorConfiguration.getBuilder()
+              .setHost("api.example.com")
+              .setLogEnabled(false)
+              .build());
+   }
+
+   @Benchmark
+   public Request buildWithParameters() {
+      return GetRequest.newInstance()
+              .setSchemeHttps()
+              .setHost("api.example.com")
+              .setPath("v1/catalog/items")
+              .addGetParam("category", "phones & tablets")
+              .addGetParam("page", 3)
+              .addGetParam("limit", 50)
+              .addGetParam("price", 99.5)
+              .build();
+   }
+
+   @Benchmark
+   public String buildAndGetUrl() {
+      return buildWithParameters().getURL().toString();
+   }
+
+   @Benchmark
+   public String buildWithUrl() {
+      return GetRequest.newInstance().setUrl("https://api.example.com/v1/catalog/items?page=3").build().toString();
+   }
+
+}
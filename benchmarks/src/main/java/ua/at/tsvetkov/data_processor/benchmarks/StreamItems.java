@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.benchmarks;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+import ua.at.tsvetkov.data_processor.templates.JSONStreamDataAbstract;
+
+/**
+ * {@link Payloads} document parsed with the Jackson streaming parser.
+ *
+ * @author lordtao
+ */
+public class StreamItems extends JSONStreamDataAbstract {
+
+   public long idSum;
+   public int  count;
+
+   @Override
+   protected void onField(String name, JsonParser parser) throws IOException {
+      if ("success".equals(name)) {
+         setSuccess(parser.getBooleanValue());
+      } else if ("items".equals(name)) {
+         while (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+               String field = parser.getCurrentName();
+               parser.nextToken();
+               if ("id".equals(field)) {
+                  idSum += parser.getLongValue();
+               } else if ("name".equals(field)) {
+                  parser.getText();
+               } else if ("price".equals(field)) {
+                  parser.getDoubleValue();
+               } else {
+                  parser.skipChildren();
+               }
+            }
+            count++;
+         }
+      }
+   }
+
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+
+import ua.at.tsvetkov.data_processor.benchmarks.Items;
+import ua.at.tsvetkov.data_processor.benchmarks.StreamItems;
+import ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface;
+import ua.at.tsvetkov.data_processor.interfaces.StringDataInterface;
+import ua.at.tsvetkov.data_processor.processors.abstractclasses.AbstractProcessor;
+
+/**
+ * Creation of the result processor by Processor.createProcessor: the constructor cache of {@link ProcessorFactory} against the former
+ * lookup of the declared constructors on every request. Placed in the processors package to reach the package private factory method.
+ *
+ * @author lordtao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessorFactoryBenchmark {
+
+   @Benchmark
+   public AbstractProcessor<Items> factoryString() throws Exception {
+      return ProcessorFactory.newProcessor(Items.class);
+   }
+
+   @Benchmark
+   public AbstractProcessor<StreamItems> factoryInputStream() throws Exception {
+      return ProcessorFactory.newProcessor(StreamItems.class);
+   }
+
+   @Benchmark
+   public AbstractProcessor<Items> declaredConstructorsString() throws Exception {
+      return lookUpEveryTime(Items.class);
+   }
+
+   @Benchmark
+   public AbstractProcessor<StreamItems> declaredConstructorsInputStream() throws Exception {
+      return lookUpEveryTime(StreamItems.class);
+   }
+
+   /**
+    * The processor creation before the constructor cache.
+    */
+   @SuppressWarnings({"rawtypes", "unchecked"})
+   private static <T> AbstractProcessor<T> lookUpEveryTime(Class<T> clazz) throws Exception {
+      if (AbstractProcessor.class.isAssignableFrom(clazz)) {
+         Constructor[] construct = clazz.getDeclaredConstructors();
+         return (AbstractProcessor) construct[0].newInstance();
+      } else if (InputStreamDataInterface.class.isAssignableFrom(clazz)) {
+         Constructor[] construct = clazz.getDeclaredConstructors();
+         return new InputStreamProcessor((InputStreamDataInterface) construct[0].newInstance());
+      } else if (StringDataInterface.class.isAssignableFrom(clazz)) {
+         Constructor[] construct = clazz.getDeclaredConstructors();
+         return new StringProcessor((StringDataInterface) construct[0].newInstance());
+      }
+      throw new IllegalArgumentException(Processor.INVALID_CLASS_PARAMETER);
+   }
+
+}
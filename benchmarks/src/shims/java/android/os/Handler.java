@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package android.os;
+
+/**
+ * JVM shim of the Android Handler for benchmarks. There is no message queue on the JVM, the posted task runs immediately in the calling
+ * thread, so the callbacks are delivered in the request threads.
+ *
+ * @author lordtao
+ */
+public class Handler {
+
+   public Handler() {
+   }
+
+   public Handler(Looper looper) {
+   }
+
+   public boolean post(Runnable r) {
+      r.run();
+      return true;
+   }
+
+}
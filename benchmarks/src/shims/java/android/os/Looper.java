@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package android.os;
+
+/**
+ * JVM shim of the Android Looper for benchmarks. Every thread has the looper, so the processors are always able to deliver results. The
+ * thread which first touched the class is treated as the main thread.
+ *
+ * @author lordtao
+ */
+public class Looper {
+
+   private static final Looper MAIN = new Looper(Thread.currentThread());
+
+   private final Thread thread;
+
+   private Looper(Thread thread) {
+      this.thread = thread;
+   }
+
+   public static Looper myLooper() {
+      return MAIN;
+   }
+
+   public static Looper getMainLooper() {
+      return MAIN;
+   }
+
+   public Thread getThread() {
+      return thread;
+   }
+
+}
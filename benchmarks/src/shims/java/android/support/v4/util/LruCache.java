@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package android.support.v4.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JVM shim of the support LruCache for benchmarks with the same semantics: the entries are weighed by {@link #sizeOf(Object, Object)}
+ * and the least recently used ones are evicted when the total size exceeds the max size.
+ *
+ * @author lordtao
+ */
+public class LruCache<K, V> {
+
+   private final LinkedHashMap<K, V> map = new LinkedHashMap<>(0, 0.75f, true);
+   private int size;
+   private int maxSize;
+   private int putCount;
+   private int evictionCount;
+   private int hitCount;
+   private int missCount;
+
+   public LruCache(int maxSize) {
+      if (maxSize <= 0) {
+         throw new IllegalArgumentException("maxSize <= 0");
+      }
+      this.maxSize = maxSize;
+   }
+
+   public final V get(K key) {
+      V value;
+      synchronized (this) {
+         value = map.get(key);
+         if (value != null) {
+            hitCount++;
+         } else {
+            missCount++;
+         }
+      }
+      return value;
+   }
+
+   public final V put(K key, V value) {
+      V previous;
+      synchronized (this) {
+         putCount++;
+         size += sizeOf(key, value);
+         previous = map.put(key, value);
+         if (previous != null) {
+            size -= sizeOf(key, previous);
+         }
+      }
+      if (previous != null) {
+         entryRemoved(false, key, previous, value);
+      }
+      trimToSize(maxSize);
+      return previous;
+   }
+
+   public final V remove(K key) {
+      V previous;
+      synchronized (this) {
+         previous = map.remove(key);
+         if (previous != null) {
+            size -= sizeOf(key, previous);
+         }
+      }
+      if (previous != null) {
+         entryRemoved(false, key, previous, null);
+      }
+      return previous;
+   }
+
+   public void trimToSize(int maxSize) {
+      while (true) {
+         K key;
+         V value;
+         synchronized (this) {
+            if (size <= maxSize || map.isEmpty()) {
+               break;
+            }
+            Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+            Map.Entry<K, V> eldest = iterator.next();
+            key = eldest.getKey();
+            value = eldest.getValue();
+            iterator.remove();
+            size -= sizeOf(key, value);
+            evictionCount++;
+         }
+         entryRemoved(true, key, value, null);
+      }
+   }
+
+   public final void evictAll() {
+      trimToSize(-1);
+   }
+
+   protected int sizeOf(K key, V value) {
+      return 1;
+   }
+
+   protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+   }
+
+   public synchronized final int size() {
+      return size;
+   }
+
+   public synchronized final int maxSize() {
+      return maxSize;
+   }
+
+   public synchronized final int hitCount() {
+      return hitCount;
+   }
+
+   public synchronized final int missCount() {
+      return missCount;
+   }
+
+   public synchronized final int putCount() {
+      return putCount;
+   }
+
+   public synchronized final int evictionCount() {
+      return evictionCount;
+   }
+
+}
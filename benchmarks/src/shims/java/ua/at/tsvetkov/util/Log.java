@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.util;
+
+/**
+ * JVM shim of the taocore Log for benchmarks. Logging is dropped, so the benchmarks measure the processing and not the console output.
+ *
+ * @author lordtao
+ */
+public final class Log {
+
+   private Log() {
+   }
+
+   public static void v(String message) {
+   }
+
+   public static void d(String message) {
+   }
+
+   public static void i(String message) {
+   }
+
+   public static void w(String message) {
+   }
+
+   public static void e(String message) {
+   }
+
+   public static void v(Object obj, String message) {
+   }
+
+   public static void d(Object obj, String message) {
+   }
+
+   public static void i(Object obj, String message) {
+   }
+
+   public static void w(Object obj, String message) {
+   }
+
+   public static void e(Object obj, String message) {
+   }
+
+   public static void w(String message, Throwable throwable) {
+   }
+
+   public static void e(String message, Throwable throwable) {
+   }
+
+   public static void e(Throwable throwable) {
+   }
+
+   public static void e(Object obj, String message, Throwable throwable) {
+   }
+
+   public static void threadInfo(Thread thread, Throwable throwable) {
+   }
+
+}
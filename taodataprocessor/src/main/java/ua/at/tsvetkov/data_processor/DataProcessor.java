@@ -24,14 +24,24 @@
 package ua.at.tsvetkov.data_processor;
 
 import android.os.Looper;
-import android.support.v4.util.LruCache;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
+import ua.at.tsvetkov.data_processor.cache.HttpDiskCache;
+import ua.at.tsvetkov.data_processor.cache.ResultCache;
+import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.metrics.MetricsDispatcher;
+import ua.at.tsvetkov.data_processor.policies.CircuitBreakers;
+import ua.at.tsvetkov.data_processor.processors.InFlightRequests;
 import ua.at.tsvetkov.data_processor.processors.Processor;
 import ua.at.tsvetkov.data_processor.processors.Processor.Callback;
+import ua.at.tsvetkov.data_processor.processors.RequestHandle;
 import ua.at.tsvetkov.data_processor.requests.Request;
+import ua.at.tsvetkov.data_processor.threads.DataProcessingThreadFactory;
 import ua.at.tsvetkov.data_processor.threads.DataProcessorThreadPool;
+import ua.at.tsvetkov.data_processor.threads.ParserThreadPool;
 import ua.at.tsvetkov.util.Log;
 
 /**
@@ -43,13 +53,25 @@ public class DataProcessor {
    private static final String ERROR_INIT_CONFIG_WITH_NULL = "DataProcessor configuration can not be initialized with null.";
    private static final String LOG_INIT_CONFIG             = "Initialize DataProcessor with configuration.";
    private static final String WARNING_RE_INIT_CONFIG      = "Try to initialize DataProcessor which had already been initialized before.";
+   private static final String ERROR_WRONG_CACHE_SETTINGS  = "Wrong cache settings: cacheEnabled = ";
    private static final String AR_R                        = "\u2192";
+   private static final String KEY_PREFIX                  = "key:";
 
-   private static DataProcessor instance;
+   private static volatile DataProcessor instance;
 
-   private DataProcessorConfiguration configuration;
-   private DataProcessorThreadPool    threadPool;
-   private ProcessorsCache            processors;
+   /**
+    * Immutable snapshot of the processor state. Published through a volatile field, so the execution methods never need the
+    * DataProcessor monitor, only {@link #init(DataProcessorConfiguration)} is serialized.
+    */
+   private volatile State state = State.EMPTY;
+
+   private final InFlightRequests  inFlightRequests = new InFlightRequests();
+   private final CircuitBreakers   circuitBreakers  = new CircuitBreakers();
+   private final MetricsDispatcher metrics          = new MetricsDispatcher();
+   /**
+    * Running requests of the result cache. Accessed only from the UI thread.
+    */
+   private final HashMap<String, Processor<?>> cachedRequests = new HashMap<>();
 
    public static DataProcessor getInstance() {
       if (instance == null) {
@@ -68,11 +90,12 @@ public class DataProcessor {
     * @return configuration
     */
    public DataProcessorConfiguration getConfiguration() {
-      return configuration;
+      return state.configuration;
    }
 
    /**
-    * Build new data processor with given configuration
+    * Build new data processor with given configuration. The first configuration is kept on the repeated initialization, the pools and
+    * caches are rebuilt from it and the replaced pools are shut down after their running tasks.
     *
     * @param configuration new configuration
     */
@@ -80,27 +103,54 @@ public class DataProcessor {
       if (configuration == null) {
          throw new IllegalArgumentException(ERROR_INIT_CONFIG_WITH_NULL);
       }
-      if (this.configuration == null) {
+      State previous = state;
+      DataProcessorConfiguration current = previous.configuration;
+      if (current == null) {
          if (configuration.isLogEnabled) {
             Log.d(LOG_INIT_CONFIG);
          }
-         this.configuration = configuration;
+         current = configuration;
       } else {
          Log.w(WARNING_RE_INIT_CONFIG);
       }
-      if (configuration.isThreadPoolEnabled) {
-
-         threadPool = new DataProcessorThreadPool();
+      DataProcessorThreadPool threadPool = null;
+      ParserThreadPool parserPool = null;
+      if (current.isThreadPoolEnabled) {
+         threadPool = new DataProcessorThreadPool(current.getThreadPoolSize(), current.getThreadPoolQueueCapacity(),
+                 current.getRejectionPolicy());
+         if (current.getParserThreadPoolSize() > 0) {
+            parserPool = new ParserThreadPool(current.getParserThreadPoolSize());
+         }
+      }
+      ResultCache resultCache = null;
+      if (current.isCacheEnabled()) {
+         resultCache = new ResultCache(current.getCacheMaxBytes());
+      }
+      HttpDiskCache httpDiskCache = null;
+      if (current.getHttpCacheDir() != null) {
+         httpDiskCache = new HttpDiskCache(current.getHttpCacheDir(), current.getHttpCacheMaxBytes());
       }
-      if (configuration.isCacheEnabled()) {
-         processors = new ProcessorsCache(configuration.getCacheSize());
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+              new DataProcessingThreadFactory(DataProcessingThreadFactory.SCHEDULER_THREAD_NAME));
+      circuitBreakers.clear();
+      state = new State(current, threadPool, parserPool, scheduler, resultCache, httpDiskCache);
+      if (previous.threadPool != null) {
+         previous.threadPool.shutdown();
+      }
+      if (previous.parserPool != null) {
+         previous.parserPool.shutdown();
+      }
+      if (previous.scheduler != null) {
+         previous.scheduler.shutdown();
       }
    }
 
-   private synchronized void checkConfiguration() {
-      if (configuration == null || configuration.httpUserAgent == null) {
+   private State checkConfiguration() {
+      State current = state;
+      if (current.configuration == null || current.configuration.httpUserAgent == null) {
          throw new IllegalStateException(ERROR_NOT_INIT);
       }
+      return current;
    }
 
    /**
@@ -109,7 +159,54 @@ public class DataProcessor {
     * @return thread pool
     */
    public DataProcessorThreadPool getThreadPool() {
-      return threadPool;
+      return state.threadPool;
+   }
+
+   /**
+    * Return the thread pool which parses the responses of asynchronous requests, or null if the parsing is done by the request threads.
+    *
+    * @return parser thread pool
+    */
+   public ParserThreadPool getParserThreadPool() {
+      return state.parserPool;
+   }
+
+   /**
+    * Return the scheduler of the request deadlines and other delayed actions.
+    *
+    * @return scheduler
+    */
+   public ScheduledThreadPoolExecutor getScheduler() {
+      return state.scheduler;
+   }
+
+   /**
+    * Return the registry of running requests. Can be used to get the count of coalesced requests.
+    *
+    * @return running requests registry
+    */
+   public InFlightRequests getInFlightRequests() {
+      return inFlightRequests;
+   }
+
+   /**
+    * Return the registry of the per host circuit breakers. Can be used to get the state of hosts.
+    *
+    * @return circuit breakers registry
+    */
+   public CircuitBreakers getCircuitBreakers() {
+      return circuitBreakers;
+   }
+
+   /**
+    * Return the dispatcher of the request metrics. Register a {@link ua.at.tsvetkov.data_processor.metrics.MetricsListener MetricsListener},
+    * e.g. {@link ua.at.tsvetkov.data_processor.metrics.MetricsRegistry MetricsRegistry}, to collect the phase timings, byte and status
+    * counters of requests. Nothing is collected while there are no listeners.
+    *
+    * @return metrics dispatcher
+    */
+   public MetricsDispatcher getMetrics() {
+      return metrics;
    }
 
    /**
@@ -117,7 +214,11 @@ public class DataProcessor {
     * additional effect if already shut down.
     */
    public void shutdown() {
-      threadPool.shutdown();
+      state.threadPool.shutdown();
+      if (state.parserPool != null) {
+         state.parserPool.shutdown();
+      }
+      state.scheduler.shutdown();
       Log.v("Thread pool will shutdown.");
    }
 
@@ -129,7 +230,11 @@ public class DataProcessor {
     */
    public List<Runnable> shutdownNow() {
       Log.v("Thread pool will shutdown now.");
-      return threadPool.shutdownNow();
+      if (state.parserPool != null) {
+         state.parserPool.shutdown();
+      }
+      state.scheduler.shutdownNow();
+      return state.threadPool.shutdownNow();
    }
 
    // ******************************** Execution methods ********************************
@@ -144,7 +249,7 @@ public class DataProcessor {
     * @param clazz   class to generate
     * @return generated object
     */
-   public synchronized <T> T execute(Request request, Class<T> clazz) {
+   public <T> T execute(Request request, Class<T> clazz) {
       checkConfiguration();
       return new Processor<T>(this, request, clazz).execute();
    }
@@ -157,10 +262,11 @@ public class DataProcessor {
     *                {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
     * @param request prepared request
     * @param clazz   class to generate
+    * @return handle to cancel the request
     */
-   public synchronized <T> void executeAsync(Request request, Class<T> clazz) {
+   public <T> RequestHandle executeAsync(Request request, Class<T> clazz) {
       checkConfiguration();
-      new Processor<T>(this, request, clazz, null).executeAsync();
+      return new Processor<T>(this, request, clazz, null).executeAsync();
    }
 
    /**
@@ -172,49 +278,106 @@ public class DataProcessor {
     * @param request  prepared request
     * @param clazz    class to generate
     * @param callback return result of request and the generated object (if success) in this callback
+    * @return handle to cancel the request
     */
-   public synchronized <T> void executeAsync(Request request, Class<T> clazz, Callback<T> callback) {
+   public <T> RequestHandle executeAsync(Request request, Class<T> clazz, Callback<T> callback) {
       checkConfiguration();
-      new Processor<T>(this, request, clazz, callback).executeAsync();
+      return new Processor<T>(this, request, clazz, callback).executeAsync();
+   }
+
+   /**
+    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use the result cache for
+    * store result. If the fresh result was loaded earlier then returns it. If the result is expired but still in the stale-while-revalidate
+    * period then returns it and reloads the data in background.
+    *
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request  prepared request, its identity is the cache key
+    * @param clazz    class to generate
+    * @param callback return result of request and the generated object (if success) in this callback
+    * @return handle to cancel the request
+    */
+   public <T> RequestHandle executeCachedAsync(Request request, Class<T> clazz, Callback<T> callback) {
+      return executeCachedAsync(request, clazz, callback, false);
+   }
+
+   /**
+    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use the result cache for
+    * store result. Ignore the previous result if it was loaded. Forcing the download.
+    *
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request  prepared request, its identity is the cache key
+    * @param clazz    class to generate
+    * @param callback return result of request and the generated object (if success) in this callback
+    * @return handle to cancel the request
+    */
+   public <T> RequestHandle executeCachedAsyncForce(Request request, Class<T> clazz, Callback<T> callback) {
+      return executeCachedAsync(request, clazz, callback, true);
+   }
+
+   /**
+    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use the result cache for
+    * store result. <code>isForce</code> specifies whether to force the download.
+    *
+    * @param <T>      class implements one of the abstract interfaces
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
+    *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
+    * @param request  prepared request, its identity is the cache key
+    * @param clazz    class to generate
+    * @param callback return result of request and the generated object (if success) in this callback
+    * @param isForce  is need to force reload data
+    * @return handle to cancel the request
+    */
+   public <T> RequestHandle executeCachedAsync(Request request, Class<T> clazz, Callback<T> callback, boolean isForce) {
+      return executeCached(request.getIdentity() + ' ' + clazz.getName(), request, clazz, callback, isForce);
    }
 
    /**
-    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use LruCache for store
-    * result. If the result was loaded earlier then returns it.
+    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use the result cache for
+    * store result. If the result was loaded earlier then returns it.
     *
-    * @param key      for identification of the Request for saving in LruCache
+    * @param key      for identification of the Request for saving in the result cache
     * @param <T>      class implements one of the abstract interfaces
     *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
     *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
     * @param request  prepared request
     * @param clazz    class to generate
     * @param callback return result of request and the generated object (if success) in this callback
+    * @deprecated the request identity is used as a cache key, use {@link #executeCachedAsync(Request, Class, Callback)}
+    * @return handle to cancel the request
     */
-   public synchronized <T> void executeCachedAsync(int key, Request request, Class<T> clazz, Callback<T> callback) {
-      executeCachedAsync(key, request, clazz, callback, false);
+   @Deprecated
+   public <T> RequestHandle executeCachedAsync(int key, Request request, Class<T> clazz, Callback<T> callback) {
+      return executeCachedAsync(key, request, clazz, callback, false);
    }
 
    /**
-    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use LruCache for store
-    * result. Ignore the previous result if it was loaded. Forcing the download.
+    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use the result cache for
+    * store result. Ignore the previous result if it was loaded. Forcing the download.
     *
-    * @param key      for identification of the Request for saving in LruCache
+    * @param key      for identification of the Request for saving in the result cache
     * @param <T>      class implements one of the abstract interfaces
     *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
     *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
     * @param request  prepared request
     * @param clazz    class to generate
     * @param callback return result of request and the generated object (if success) in this callback
+    * @deprecated the request identity is used as a cache key, use {@link #executeCachedAsyncForce(Request, Class, Callback)}
+    * @return handle to cancel the request
     */
-   public synchronized <T> void executeCachedAsyncForce(int key, Request request, Class<T> clazz, Callback<T> callback) {
-      executeCachedAsync(key, request, clazz, callback, true);
+   @Deprecated
+   public <T> RequestHandle executeCachedAsyncForce(int key, Request request, Class<T> clazz, Callback<T> callback) {
+      return executeCachedAsync(key, request, clazz, callback, true);
    }
 
    /**
-    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use LruCache for store
-    * result. <code>isForce</code> specifies whether to force the download.
+    * Execute async request, process the results in instance of <b>clazz</b> and return created clazz in callback. Use the result cache for
+    * store result. <code>isForce</code> specifies whether to force the download.
     *
-    * @param key      for identification of the Request for saving in LruCache
+    * @param key      for identification of the Request for saving in the result cache
     * @param <T>      class implements one of the abstract interfaces
     *                 {@link ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface InputStreamDataInterface} or
     *                 {@link ua.at.tsvetkov.data_processor.interfaces.StringDataInterface StringDataInterface}
@@ -222,52 +385,136 @@ public class DataProcessor {
     * @param clazz    class to generate
     * @param callback return result of request and the generated object (if success) in this callback
     * @param isForce  is need to force reload data
+    * @deprecated the request identity is used as a cache key, use {@link #executeCachedAsync(Request, Class, Callback, boolean)}
+    * @return handle to cancel the request
     */
-   public synchronized <T> void executeCachedAsync(int key, Request request, Class<T> clazz, Callback<T> callback, boolean isForce) {
+   @Deprecated
+   public <T> RequestHandle executeCachedAsync(int key, Request request, Class<T> clazz, Callback<T> callback, boolean isForce) {
+      return executeCached(KEY_PREFIX + key, request, clazz, callback, isForce);
+   }
+
+   /**
+    * Return the result cache or null if the cache is not enabled.
+    *
+    * @return result cache
+    */
+   public ResultCache getResultCache() {
+      return state.resultCache;
+   }
+
+   /**
+    * Return the http disk cache or null if it is not configured.
+    *
+    * @return http disk cache
+    */
+   public HttpDiskCache getHttpDiskCache() {
+      return state.httpDiskCache;
+   }
+
+   private <T> RequestHandle executeCached(String key, Request request, Class<T> clazz, Callback<T> callback, boolean isForce) {
       if (Looper.getMainLooper().getThread() != Thread.currentThread()) {
          throw new IllegalStateException("Must be executed from UI thread.");
       }
-      checkConfiguration();
-      if (!configuration.isCacheEnabled()) {
-         throw new IllegalArgumentException("Wrong cache settings: cache is not enabled");
+      State current = checkConfiguration();
+      DataProcessorConfiguration configuration = current.configuration;
+      if (!configuration.isCacheEnabled() || configuration.getCacheMaxBytes() <= 0) {
+         throw new IllegalArgumentException(ERROR_WRONG_CACHE_SETTINGS + configuration.isCacheEnabled() + ", cacheMaxBytes = "
+                 + configuration.getCacheMaxBytes());
       }
-      if (!configuration.isCacheEnabled() || configuration.getCacheSize() <= 0) {
-         throw new IllegalArgumentException("Wrong cache settings: cacheSize = " + configuration.getCacheSize());
+      Processor<?> running = cachedRequests.get(key);
+      if (isForce) {
+         if (running != null) {
+            running.setCallback(null);
+            running.cancel();
+         }
+         Log.v(AR_R + " Forced execute: " + request);
+         return startCached(current.resultCache, key, request, clazz, callback);
       }
-      Processor<?> pr = processors.get(key);
-      if (pr != null) {
+      ResultCache.Entry entry = current.resultCache.get(key);
+      if (entry != null) {
          @SuppressWarnings("unchecked")
-         Processor<T> processor = (Processor<T>) pr;
-         if (isForce) {
-            processor.setCallback(null);
-            processor = new Processor<T>(this, request, clazz, callback);
-            processors.put(key, processor);
-            processor.executeAsync();
-            Log.v(AR_R + " Forced execute: " + request);
-         } else if (processor.isFinished()) {
-            processor.setCallback(callback);
-            processor.redelivery();
+         T result = (T) entry.getResult();
+         if (callback != null) {
+            callback.onFinish(result, entry.getStatusCode(), entry.getMessage());
+         }
+         if (entry.isFresh(System.currentTimeMillis())) {
             Log.v(AR_R + " Redelivery data: " + request);
-         } else {
-            Log.v(AR_R + " Still running: " + request);
+         } else if (running == null) {
+            startCached(current.resultCache, key, request, clazz, null);
+            Log.v(AR_R + " Redelivery stale data, revalidate: " + request);
          }
+         return RequestHandle.FINISHED;
+      } else if (running != null) {
+         Log.v(AR_R + " Still running: " + request);
+         // The handle of the running request belongs to its first caller, this one must not cancel it
+         return RequestHandle.FINISHED;
       } else {
-         Processor<T> processor = new Processor<T>(this, request, clazz, callback);
-         processors.put(key, processor);
-         processor.executeAsync();
+         return startCached(current.resultCache, key, request, clazz, callback);
       }
    }
 
-   private class ProcessorsCache extends LruCache<Integer, Processor<?>> {
+   private <T> RequestHandle startCached(ResultCache resultCache, String key, Request request, Class<T> clazz, Callback<T> callback) {
+      Processor<T> processor = new Processor<T>(this, request, clazz);
+      processor.setCallback(new CachingCallback<T>(resultCache, key, processor, callback));
+      cachedRequests.put(key, processor);
+      return processor.executeAsync();
+   }
+
+   /**
+    * Stores the successful result in the result cache and passes it to the caller callback. Called on the UI thread.
+    */
+   private class CachingCallback<T> implements Callback<T> {
+
+      private final ResultCache  resultCache;
+      private final String       key;
+      private final Processor<T> processor;
+      private final Callback<T>  callback;
 
-      /**
-       * @param maxSize max cache size
-       */
-      public ProcessorsCache(int maxSize) {
-         super(maxSize);
+      CachingCallback(ResultCache resultCache, String key, Processor<T> processor, Callback<T> callback) {
+         this.resultCache = resultCache;
+         this.key = key;
+         this.processor = processor;
+         this.callback = callback;
+      }
+
+      @Override
+      public void onFinish(T obj, @ConnectionConstants.ConnectionResponseCode int statusCode, String errMessage) {
+         if (cachedRequests.get(key) == processor) {
+            cachedRequests.remove(key);
+         }
+         if (obj != null && (statusCode == ConnectionConstants.HTTP_OK || statusCode == ConnectionConstants.FILE_SUCCESS)) {
+            Request request = processor.getRequest();
+            resultCache.put(key, obj, statusCode, errMessage, processor.getReceivedBytes(), request.getCacheTtl(),
+                    request.getCacheStaleWhileRevalidate());
+         }
+         if (callback != null) {
+            callback.onFinish(obj, statusCode, errMessage);
+         }
       }
 
    }
 
+   private static final class State {
+
+      static final State EMPTY = new State(null, null, null, null, null, null);
+
+      final DataProcessorConfiguration configuration;
+      final DataProcessorThreadPool    threadPool;
+      final ParserThreadPool           parserPool;
+      final ScheduledThreadPoolExecutor scheduler;
+      final ResultCache                resultCache;
+      final HttpDiskCache              httpDiskCache;
+
+      State(DataProcessorConfiguration configuration, DataProcessorThreadPool threadPool, ParserThreadPool parserPool,
+            ScheduledThreadPoolExecutor scheduler, ResultCache resultCache, HttpDiskCache httpDiskCache) {
+         this.configuration = configuration;
+         this.threadPool = threadPool;
+         this.parserPool = parserPool;
+         this.scheduler = scheduler;
+         this.resultCache = resultCache;
+         this.httpDiskCache = httpDiskCache;
+      }
+
+   }
 
 }
@@ -23,8 +23,18 @@
  ******************************************************************************/
 package ua.at.tsvetkov.data_processor;
 
+import java.io.File;
+
 import ua.at.tsvetkov.data_processor.helpers.Encoding;
 import ua.at.tsvetkov.data_processor.helpers.Scheme;
+import ua.at.tsvetkov.data_processor.metrics.EventListener;
+import ua.at.tsvetkov.data_processor.policies.CircuitBreakerPolicy;
+import ua.at.tsvetkov.data_processor.policies.RejectionPolicy;
+import ua.at.tsvetkov.data_processor.policies.ResponseLogPolicy;
+import ua.at.tsvetkov.data_processor.policies.RetryBudget;
+import ua.at.tsvetkov.data_processor.policies.RetryPolicy;
+import ua.at.tsvetkov.data_processor.threads.DataProcessorThreadPool;
+import ua.at.tsvetkov.data_processor.threads.ParserThreadPool;
 import ua.at.tsvetkov.util.Log;
 
 /**
@@ -35,11 +45,27 @@ public final class DataProcessorConfiguration {
    public static final String HTTP_ANDROID_USER_AGENT = "Mozilla/5.0 (Linux; U; Android 2.2.1; en-us; Nexus One Build/FRG83) AppleWebKit/533.1 (KHTML, like Gecko) Version/4.0 Mobile Safari/533.1";
    public static final int DEFAULT_TIMEOUT = 5000;
    public static final int DEFAULT_CACHE_SIZE = 10;
+   public static final int DEFAULT_CACHE_MAX_BYTES = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, Integer.MAX_VALUE);
+   public static final long DEFAULT_CACHE_TTL = 5 * 60 * 1000;
+   public static final long DEFAULT_CACHE_STALE_WHILE_REVALIDATE = 60 * 60 * 1000;
+   public static final long DEFAULT_HTTP_CACHE_MAX_BYTES = 10 * 1024 * 1024;
+   public static final int DEFAULT_PARSER_BUFFER_LIMIT = 512 * 1024;
+   public static final long DEFAULT_FILE_MAPPING_LIMIT = 16 * 1024 * 1024;
 
    protected boolean isLogEnabled;
    protected boolean isCheckingRequestStringEnabled;
    protected boolean isShowProcessingTime;
    protected boolean isThreadPoolEnabled;
+   private int threadPoolSize;
+   private int threadPoolQueueCapacity;
+   private RejectionPolicy rejectionPolicy;
+   private int parserThreadPoolSize;
+   private int parserBufferLimit;
+   private long requestDeadline;
+   private RetryPolicy retryPolicy;
+   private RetryBudget retryBudget;
+   private CircuitBreakerPolicy circuitBreakerPolicy;
+   private EventListener eventListener;
    protected int timeout;
    protected String httpUserAgent;
    protected String host;
@@ -49,12 +75,32 @@ public final class DataProcessorConfiguration {
    protected String testServerUrl;
    private boolean isCacheEnabled;
    private int cacheSize;
+   private int cacheMaxBytes;
+   private long cacheTtl;
+   private long cacheStaleWhileRevalidate;
+   private boolean isRequestCoalescingEnabled;
+   private File httpCacheDir;
+   private long httpCacheMaxBytes;
+   private ResponseLogPolicy responseLogPolicy;
+   private boolean isResponseCompressionEnabled;
+   private boolean isStoreCompressedFiles;
+   private long fileMappingLimit;
 
    private DataProcessorConfiguration(final Builder builder) {
       isLogEnabled = builder.isLogEnabled;
       httpUserAgent = builder.httpUserAgent;
       timeout = builder.timeout;
       isThreadPoolEnabled = builder.isThreadPoolEnabled;
+      threadPoolSize = builder.threadPoolSize;
+      threadPoolQueueCapacity = builder.threadPoolQueueCapacity;
+      rejectionPolicy = builder.rejectionPolicy;
+      parserThreadPoolSize = builder.parserThreadPoolSize;
+      parserBufferLimit = builder.parserBufferLimit;
+      requestDeadline = builder.requestDeadline;
+      retryPolicy = builder.retryPolicy != null ? builder.retryPolicy : RetryPolicy.DISABLED;
+      retryBudget = builder.retryBudget;
+      eventListener = builder.eventListener;
+      circuitBreakerPolicy = builder.circuitBreakerPolicy != null ? builder.circuitBreakerPolicy : CircuitBreakerPolicy.DISABLED;
       host = builder.host;
       port = builder.port;
       scheme = builder.scheme;
@@ -64,16 +110,49 @@ public final class DataProcessorConfiguration {
       testServerUrl = builder.testServerUrl;
       isCacheEnabled = builder.isCacheEnabled;
       cacheSize = builder.cacheSize;
+      cacheMaxBytes = builder.cacheMaxBytes;
+      cacheTtl = builder.cacheTtl;
+      cacheStaleWhileRevalidate = builder.cacheStaleWhileRevalidate;
+      isRequestCoalescingEnabled = builder.isRequestCoalescingEnabled;
+      httpCacheDir = builder.httpCacheDir;
+      httpCacheMaxBytes = builder.httpCacheMaxBytes;
+      isResponseCompressionEnabled = builder.isResponseCompressionEnabled;
+      isStoreCompressedFiles = builder.isStoreCompressedFiles;
+      fileMappingLimit = builder.fileMappingLimit;
+      if (builder.responseLogPolicy != null) {
+         responseLogPolicy = builder.responseLogPolicy;
+      } else if (isLogEnabled) {
+         responseLogPolicy = ResponseLogPolicy.DEFAULT;
+      } else {
+         responseLogPolicy = ResponseLogPolicy.DISABLED;
+      }
       if (isLogEnabled) {
          Log.i("========= Data Processor Configuration ==========");
          Log.i("Host = " + scheme + host + port);
          Log.i("Test url = " + testServerUrl);
          Log.i("isShowProcessingTime = " + isShowProcessingTime);
          if (isCacheEnabled) {
-            Log.i("isCacheEnabled = true, cacheSize = " + cacheSize);
+            Log.i("isCacheEnabled = true, cacheMaxBytes = " + cacheMaxBytes + ", cacheTtl = " + cacheTtl + ", cacheStaleWhileRevalidate = "
+                    + cacheStaleWhileRevalidate);
          } else {
             Log.i("isCacheEnabled = false");
          }
+         if (isThreadPoolEnabled) {
+            Log.i("threadPoolSize = " + threadPoolSize + ", threadPoolQueueCapacity = " + threadPoolQueueCapacity + ", rejectionPolicy = "
+                    + rejectionPolicy);
+            Log.i("parserThreadPoolSize = " + parserThreadPoolSize + ", parserBufferLimit = " + parserBufferLimit);
+         } else {
+            Log.i("isThreadPoolEnabled = false");
+         }
+         Log.i("timeout = " + timeout + ", requestDeadline = " + requestDeadline);
+         Log.i(retryPolicy + ", " + retryBudget);
+         Log.i(String.valueOf(circuitBreakerPolicy));
+         Log.i("isRequestCoalescingEnabled = " + isRequestCoalescingEnabled);
+         if (httpCacheDir != null) {
+            Log.i("httpCacheDir = " + httpCacheDir + ", httpCacheMaxBytes = " + httpCacheMaxBytes);
+         }
+         Log.i("isResponseCompressionEnabled = " + isResponseCompressionEnabled + ", isStoreCompressedFiles = " + isStoreCompressedFiles);
+         Log.i("fileMappingLimit = " + fileMappingLimit);
          Log.i("httpUserAgent = " + httpUserAgent);
          Log.i("=================================================");
       }
@@ -95,14 +174,98 @@ public final class DataProcessorConfiguration {
       return isCacheEnabled;
    }
 
+   public int getThreadPoolSize() {
+      return threadPoolSize;
+   }
+
+   public int getThreadPoolQueueCapacity() {
+      return threadPoolQueueCapacity;
+   }
+
+   public RejectionPolicy getRejectionPolicy() {
+      return rejectionPolicy;
+   }
+
+   public int getParserThreadPoolSize() {
+      return parserThreadPoolSize;
+   }
+
+   public int getParserBufferLimit() {
+      return parserBufferLimit;
+   }
+
+   public long getRequestDeadline() {
+      return requestDeadline;
+   }
+
+   public RetryPolicy getRetryPolicy() {
+      return retryPolicy;
+   }
+
+   public RetryBudget getRetryBudget() {
+      return retryBudget;
+   }
+
+   public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+      return circuitBreakerPolicy;
+   }
+
+   public EventListener getEventListener() {
+      return eventListener;
+   }
+
+   public boolean isRequestCoalescingEnabled() {
+      return isRequestCoalescingEnabled;
+   }
+
+   public File getHttpCacheDir() {
+      return httpCacheDir;
+   }
+
+   public long getHttpCacheMaxBytes() {
+      return httpCacheMaxBytes;
+   }
+
+   public ResponseLogPolicy getResponseLogPolicy() {
+      return responseLogPolicy;
+   }
+
+   public boolean isResponseCompressionEnabled() {
+      return isResponseCompressionEnabled;
+   }
+
+   public boolean isStoreCompressedFiles() {
+      return isStoreCompressedFiles;
+   }
+
+   public long getFileMappingLimit() {
+      return fileMappingLimit;
+   }
+
    public int getTimeout() {
       return timeout;
    }
 
+   /**
+    * @deprecated the result cache is weighed in bytes, use {@link #getCacheMaxBytes()}
+    */
+   @Deprecated
    public int getCacheSize() {
       return cacheSize;
    }
 
+   public int getCacheMaxBytes() {
+      return cacheMaxBytes;
+   }
+
+   public long getCacheTtl() {
+      return cacheTtl;
+   }
+
+   public long getCacheStaleWhileRevalidate() {
+      return cacheStaleWhileRevalidate;
+   }
+
    public String getHttpUserAgent() {
       return httpUserAgent;
    }
@@ -136,8 +299,30 @@ public final class DataProcessorConfiguration {
       builder2.append(isCheckingRequestStringEnabled);
       builder2.append(", isShowProcessingTime=");
       builder2.append(isShowProcessingTime);
+      builder2.append(", threadPoolSize=");
+      builder2.append(threadPoolSize);
+      builder2.append(", threadPoolQueueCapacity=");
+      builder2.append(threadPoolQueueCapacity);
+      builder2.append(", rejectionPolicy=");
+      builder2.append(rejectionPolicy);
+      builder2.append(", parserThreadPoolSize=");
+      builder2.append(parserThreadPoolSize);
+      builder2.append(", parserBufferLimit=");
+      builder2.append(parserBufferLimit);
+      builder2.append(", isRequestCoalescingEnabled=");
+      builder2.append(isRequestCoalescingEnabled);
+      builder2.append(", isResponseCompressionEnabled=");
+      builder2.append(isResponseCompressionEnabled);
+      builder2.append(", fileMappingLimit=");
+      builder2.append(fileMappingLimit);
       builder2.append(", timeout=");
       builder2.append(timeout);
+      builder2.append(", requestDeadline=");
+      builder2.append(requestDeadline);
+      builder2.append(", retryPolicy=");
+      builder2.append(retryPolicy);
+      builder2.append(", circuitBreakerPolicy=");
+      builder2.append(circuitBreakerPolicy);
       builder2.append(", httpUserAgent=");
       builder2.append(httpUserAgent);
       builder2.append(", host=");
@@ -161,8 +346,28 @@ public final class DataProcessorConfiguration {
    public static class Builder {
 
       public int cacheSize = DEFAULT_CACHE_SIZE;
+      private int cacheMaxBytes = DEFAULT_CACHE_MAX_BYTES;
+      private long cacheTtl = DEFAULT_CACHE_TTL;
+      private long cacheStaleWhileRevalidate = DEFAULT_CACHE_STALE_WHILE_REVALIDATE;
       public boolean isCacheEnabled = true;
       public boolean isThreadPoolEnabled = true;
+      private int threadPoolSize = DataProcessorThreadPool.DEFAULT_POOL_SIZE;
+      private int threadPoolQueueCapacity = DataProcessorThreadPool.DEFAULT_QUEUE_CAPACITY;
+      private RejectionPolicy rejectionPolicy = RejectionPolicy.DROP_OLDEST_PREFETCH;
+      private int parserThreadPoolSize = ParserThreadPool.DEFAULT_POOL_SIZE;
+      private int parserBufferLimit = DEFAULT_PARSER_BUFFER_LIMIT;
+      private long requestDeadline = 0;
+      private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+      private RetryBudget retryBudget = new RetryBudget();
+      private CircuitBreakerPolicy circuitBreakerPolicy = CircuitBreakerPolicy.DEFAULT;
+      private EventListener eventListener = null;
+      private boolean isRequestCoalescingEnabled = true;
+      private File httpCacheDir = null;
+      private long httpCacheMaxBytes = DEFAULT_HTTP_CACHE_MAX_BYTES;
+      private ResponseLogPolicy responseLogPolicy = null;
+      private boolean isResponseCompressionEnabled = true;
+      private boolean isStoreCompressedFiles = false;
+      private long fileMappingLimit = DEFAULT_FILE_MAPPING_LIMIT;
       private int timeout = 0;
       public boolean isCheckingRequestStringEnabled = false;
       private boolean isLogEnabled = true;
@@ -203,6 +408,65 @@ public final class DataProcessorConfiguration {
          return this;
       }
 
+      /**
+       * Set the count of threads of the thread pool. Twice the count of processors by default.
+       *
+       * @param size count of threads
+       * @return this builder
+       */
+      public Builder setThreadPoolSize(int size) {
+         threadPoolSize = size;
+         return this;
+      }
+
+      /**
+       * Set the max count of asynchronous requests waiting in the thread pool queue. The requests are taken from the queue in the order
+       * of their {@link ua.at.tsvetkov.data_processor.helpers.Priority Priority}. 256 by default.
+       *
+       * @param capacity queue capacity
+       * @return this builder
+       */
+      public Builder setThreadPoolQueueCapacity(int capacity) {
+         threadPoolQueueCapacity = capacity;
+         return this;
+      }
+
+      /**
+       * Set the action on the submission of the request to the full queue. {@link RejectionPolicy#DROP_OLDEST_PREFETCH} by default.
+       *
+       * @param policy rejection policy
+       * @return this builder
+       */
+      public Builder setRejectionPolicy(RejectionPolicy policy) {
+         rejectionPolicy = policy;
+         return this;
+      }
+
+      /**
+       * Set the count of threads which parse the responses of asynchronous requests. The request threads only download the responses,
+       * so they don't wait for the parsing and the parsing doesn't wait for the network. The count of processors by default, 0 to parse
+       * in the request threads.
+       *
+       * @param size count of threads
+       * @return this builder
+       */
+      public Builder setParserThreadPoolSize(int size) {
+         parserThreadPoolSize = size;
+         return this;
+      }
+
+      /**
+       * Set the max size of the response which is read ahead into memory to be parsed by the parser thread pool. Larger responses are
+       * parsed by the request thread while they are downloading. 512 KB by default.
+       *
+       * @param limit max size in bytes
+       * @return this builder
+       */
+      public Builder setParserBufferLimit(int limit) {
+         parserBufferLimit = limit;
+         return this;
+      }
+
       public Builder setCheckingRequestStringEnabled(boolean isEnabled) {
          isCheckingRequestStringEnabled = isEnabled;
          return this;
@@ -218,11 +482,123 @@ public final class DataProcessorConfiguration {
          return this;
       }
 
+      /**
+       * @deprecated the result cache is weighed in bytes, use {@link #setCacheMaxBytes(int)}
+       */
+      @Deprecated
       public Builder setCacheSize(int size) {
          cacheSize = size;
          return this;
       }
 
+      /**
+       * Set the max summary size of the results in the result cache. The size of a result is estimated by the count of received bytes.
+       *
+       * @param maxBytes max size in bytes
+       * @return this builder
+       */
+      public Builder setCacheMaxBytes(int maxBytes) {
+         cacheMaxBytes = maxBytes;
+         return this;
+      }
+
+      /**
+       * Set the default time to live of the results in the result cache. 5 minutes by default.
+       *
+       * @param ttl time to live in milliseconds
+       * @return this builder
+       */
+      public Builder setCacheTtl(long ttl) {
+         cacheTtl = ttl;
+         return this;
+      }
+
+      /**
+       * Set the default time after expiration during which the stale result is returned from the result cache while the fresh one is
+       * loading. 1 hour by default, 0 to disable.
+       *
+       * @param staleWhileRevalidate time in milliseconds
+       * @return this builder
+       */
+      public Builder setCacheStaleWhileRevalidate(long staleWhileRevalidate) {
+         cacheStaleWhileRevalidate = staleWhileRevalidate;
+         return this;
+      }
+
+      /**
+       * Enables sharing of one network fetch and one parse between equal requests executed at the same time, true by default. All callers
+       * receive the same result object.
+       *
+       * @param isEnabled is coalescing enabled
+       * @return this builder
+       */
+      public Builder setRequestCoalescingEnabled(boolean isEnabled) {
+         isRequestCoalescingEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Enables the http disk cache of GET responses in the given directory. The responses are stored with their ETag / Last-Modified
+       * validators and Cache-Control max-age, fresh ones are served without network and expired ones are revalidated. Disabled by default.
+       *
+       * @param directory cache directory, for example new File(context.getCacheDir(), "http")
+       * @param maxBytes  max summary size of the stored responses, 10 MB by default
+       * @return this builder
+       */
+      public Builder setHttpCache(File directory, long maxBytes) {
+         httpCacheDir = directory;
+         httpCacheMaxBytes = maxBytes;
+         return this;
+      }
+
+      /**
+       * Set the policy of response bodies logging: max logged length, sample rate. By default each body is logged up to
+       * {@link ResponseLogPolicy#DEFAULT_MAX_LENGTH} chars if the log is enabled, and nothing is logged otherwise.
+       *
+       * @param policy response log policy
+       * @return this builder
+       */
+      public Builder setResponseLogPolicy(ResponseLogPolicy policy) {
+         responseLogPolicy = policy;
+         return this;
+      }
+
+      /**
+       * Enables the gzip / deflate compression of web responses, true by default. The Accept-Encoding header is sent with each web
+       * request and the compressed responses are decoded transparently.
+       *
+       * @param isEnabled is the response compression enabled
+       * @return this builder
+       */
+      public Builder setResponseCompressionEnabled(boolean isEnabled) {
+         isResponseCompressionEnabled = isEnabled;
+         return this;
+      }
+
+      /**
+       * Enables storing of gzip responses in the cache files (see saveToCacheFile methods of requests) as is, without decoding. Such files
+       * take less space and are decoded on reading. False by default.
+       *
+       * @param isEnabled is the compressed storing enabled
+       * @return this builder
+       */
+      public Builder setStoreCompressedFiles(boolean isEnabled) {
+         isStoreCompressedFiles = isEnabled;
+         return this;
+      }
+
+      /**
+       * Set the max size of the local file (FileRequest and the cache files of requests) which is memory-mapped for the parsing instead of
+       * reading through the heap buffers. Larger files are streamed. 16 MB by default, 0 to stream all files.
+       *
+       * @param limit max size in bytes
+       * @return this builder
+       */
+      public Builder setFileMappingLimit(long limit) {
+         fileMappingLimit = limit;
+         return this;
+      }
+
       public Builder setHost(String host) {
          if (host.endsWith("/")) {
             this.host = host.substring(0, host.length() - 1);
@@ -258,11 +634,79 @@ public final class DataProcessorConfiguration {
          return this;
       }
 
+      /**
+       * Set the connect and read timeouts of the socket.
+       *
+       * @param timeout timeout in milliseconds
+       * @return this builder
+       */
       public Builder setTimeout(int timeout) {
          this.timeout = timeout;
          return this;
       }
 
+      /**
+       * Set the default max time of the whole request execution: waiting in the queue, connection, downloading and parsing. Unlike the
+       * socket timeout it limits the total time. The request is cancelled with
+       * {@link ua.at.tsvetkov.data_processor.helpers.ConnectionConstants#DEADLINE_EXCEEDED DEADLINE_EXCEEDED} status when it is exceeded.
+       * 0 (no deadline) by default.
+       *
+       * @param deadline max time in milliseconds, 0 for no deadline
+       * @return this builder
+       */
+      public Builder setRequestDeadline(long deadline) {
+         requestDeadline = deadline;
+         return this;
+      }
+
+      /**
+       * Set the default retry policy of web requests. Requests are retried on connection failures, socket timeouts and 502 / 503 / 504
+       * responses. POST requests are retried only if it is enabled for the request. {@link RetryPolicy#DEFAULT} by default.
+       *
+       * @param retryPolicy retry policy or {@link RetryPolicy#DISABLED} to disable retries
+       * @return this builder
+       */
+      public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+         this.retryPolicy = retryPolicy;
+         return this;
+      }
+
+      /**
+       * Set the process wide budget which limits the share of retried requests. 20% of requests with the reserve of 10 retries by default.
+       *
+       * @param retryBudget retry budget
+       * @return this builder
+       */
+      public Builder setRetryBudget(RetryBudget retryBudget) {
+         this.retryBudget = retryBudget;
+         return this;
+      }
+
+      /**
+       * Set the policy of the per host circuit breakers. While the circuit of the host is open, its requests fail immediately with
+       * {@link ua.at.tsvetkov.data_processor.helpers.ConnectionConstants#CIRCUIT_OPEN CIRCUIT_OPEN} status instead of waiting for the
+       * connection timeout. {@link CircuitBreakerPolicy#DEFAULT} by default.
+       *
+       * @param circuitBreakerPolicy circuit breaker policy or {@link CircuitBreakerPolicy#DISABLED} to disable it
+       * @return this builder
+       */
+      public Builder setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+         this.circuitBreakerPolicy = circuitBreakerPolicy;
+         return this;
+      }
+
+      /**
+       * Set the listener of the lifecycle events of all requests, e.g. to find out which phase dominates the request latency. The
+       * listener of the request overrides it. Not set by default.
+       *
+       * @param eventListener request events listener or null
+       * @return this builder
+       */
+      public Builder setEventListener(EventListener eventListener) {
+         this.eventListener = eventListener;
+         return this;
+      }
+
       public Builder setTestServerUrl(String testServerUrl) {
          this.testServerUrl = testServerUrl;
          return this;
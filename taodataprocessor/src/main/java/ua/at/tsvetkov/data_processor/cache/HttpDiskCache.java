@@ -0,0 +1,464 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ua.at.tsvetkov.data_processor.io.TeeInputStream;
+import ua.at.tsvetkov.util.Log;
+
+/**
+ * Disk cache of HTTP responses. Stores the response body with its validators (ETag, Last-Modified) and the expiration time computed from
+ * Cache-Control max-age or Expires headers. The fresh responses are served without network, the expired ones are revalidated with
+ * If-None-Match / If-Modified-Since request headers. The summary size of the stored bodies is bounded, least recently used entries are
+ * evicted.
+ *
+ * @author lordtao
+ */
+public class HttpDiskCache {
+
+   private static final String BODY          = ".body";
+   private static final String META          = ".meta";
+   private static final String TMP           = ".tmp";
+   private static final String ETAG          = "ETag";
+   private static final String LAST_MODIFIED = "Last-Modified";
+   private static final String EXPIRES_AT    = "Expires-At";
+   private static final String CACHE_CONTROL = "Cache-Control";
+   private static final String NO_STORE      = "no-store";
+   private static final String NO_CACHE      = "no-cache";
+   private static final String MAX_AGE       = "max-age=";
+   private static final char[] HEX           = "0123456789abcdef".toCharArray();
+
+   private final File                        directory;
+   private final long                        maxBytes;
+   private final LinkedHashMap<String, Long> sizes            = new LinkedHashMap<>(16, 0.75f, true);
+   private final AtomicLong                  hitCount         = new AtomicLong();
+   private final AtomicLong                  notModifiedCount = new AtomicLong();
+   private final AtomicLong                  networkCount     = new AtomicLong();
+   private       long                        size;
+   private       boolean                     isInitialized;
+
+   /**
+    * @param directory directory for the cache files, for example a subdirectory of Context.getCacheDir()
+    * @param maxBytes  max summary size of the stored bodies
+    */
+   public HttpDiskCache(File directory, long maxBytes) {
+      this.directory = directory;
+      this.maxBytes = maxBytes;
+   }
+
+   /**
+    * Returns the stored entry for the request or null.
+    *
+    * @param identity request identity
+    * @return entry or null
+    */
+   public synchronized Entry get(String identity) {
+      initialize();
+      String key = toKey(identity);
+      if (sizes.get(key) == null) {
+         return null;
+      }
+      Properties properties = new Properties();
+      InputStream in = null;
+      try {
+         in = new FileInputStream(new File(directory, key + META));
+         properties.load(in);
+      } catch (IOException e) {
+         removeFiles(key);
+         return null;
+      } finally {
+         closeQuietly(in);
+      }
+      long expiresAt = parseLong(properties.getProperty(EXPIRES_AT));
+      return new Entry(key, new File(directory, key + BODY), properties.getProperty(ETAG), properties.getProperty(LAST_MODIFIED), expiresAt);
+   }
+
+   /**
+    * Open the stored body.
+    *
+    * @param entry stored entry
+    * @return body stream or null if the entry was evicted
+    */
+   public InputStream open(Entry entry) {
+      try {
+         InputStream in = new FileInputStream(entry.bodyFile);
+         if (entry.isFresh()) {
+            hitCount.incrementAndGet();
+         } else {
+            notModifiedCount.incrementAndGet();
+         }
+         return in;
+      } catch (IOException e) {
+         return null;
+      }
+   }
+
+   /**
+    * Add the validators of the stored entry to the connection, so the server can answer with 304 Not Modified.
+    *
+    * @param entry      stored entry
+    * @param connection not connected yet connection
+    */
+   public static void addValidators(Entry entry, HttpURLConnection connection) {
+      if (entry.etag != null) {
+         connection.setRequestProperty("If-None-Match", entry.etag);
+      }
+      if (entry.lastModified != null) {
+         connection.setRequestProperty("If-Modified-Since", entry.lastModified);
+      }
+   }
+
+   /**
+    * Update the expiration time and validators of the entry revalidated with 304 Not Modified response.
+    *
+    * @param entry      stored entry
+    * @param connection connection with 304 response
+    */
+   public synchronized void update(Entry entry, HttpURLConnection connection) {
+      String etag = connection.getHeaderField(ETAG);
+      String lastModified = connection.getHeaderField(LAST_MODIFIED);
+      try {
+         writeMeta(entry.key, etag != null ? etag : entry.etag, lastModified != null ? lastModified : entry.lastModified, getExpiresAt(connection));
+      } catch (IOException e) {
+         Log.w("Can't update the http cache entry " + entry.bodyFile);
+      }
+   }
+
+   /**
+    * Returns the stream which stores the response body to the cache while it is read. The body is stored only if it was read to the end.
+    * If the response can't be stored then returns the source stream.
+    *
+    * @param identity   request identity
+    * @param connection connection with 200 response
+    * @param in         response body
+    * @return response body stream
+    */
+   public InputStream put(String identity, HttpURLConnection connection, InputStream in) {
+      networkCount.incrementAndGet();
+      final String etag = connection.getHeaderField(ETAG);
+      final String lastModified = connection.getHeaderField(LAST_MODIFIED);
+      String cacheControl = connection.getHeaderField(CACHE_CONTROL);
+      if (cacheControl != null && cacheControl.toLowerCase().contains(NO_STORE)) {
+         return in;
+      }
+      final long expiresAt = getExpiresAt(connection);
+      if (etag == null && lastModified == null && expiresAt <= System.currentTimeMillis()) {
+         return in;
+      }
+      synchronized (this) {
+         initialize();
+      }
+      final String key = toKey(identity);
+      final File tmp = new File(directory, key + TMP + Thread.currentThread().getId());
+      OutputStream out;
+      try {
+         out = new FileOutputStream(tmp);
+      } catch (IOException e) {
+         return in;
+      }
+      return new TeeInputStream(in, out) {
+
+         @Override
+         protected void onComplete() throws IOException {
+            commit(key, tmp, etag, lastModified, expiresAt);
+         }
+
+         @Override
+         protected void onAbort() {
+            tmp.delete();
+         }
+
+      };
+   }
+
+   /**
+    * Remove the stored response.
+    *
+    * @param identity request identity
+    */
+   public synchronized void remove(String identity) {
+      initialize();
+      removeFiles(toKey(identity));
+   }
+
+   /**
+    * Returns the summary size of the stored bodies.
+    *
+    * @return size in bytes
+    */
+   public synchronized long size() {
+      initialize();
+      return size;
+   }
+
+   /**
+    * Returns the max summary size of the stored bodies.
+    *
+    * @return size in bytes
+    */
+   public long getMaxBytes() {
+      return maxBytes;
+   }
+
+   /**
+    * Returns the count of fresh responses served without network.
+    *
+    * @return hit count
+    */
+   public long getHitCount() {
+      return hitCount.get();
+   }
+
+   /**
+    * Returns the count of stored responses revalidated by 304 Not Modified.
+    *
+    * @return not modified count
+    */
+   public long getNotModifiedCount() {
+      return notModifiedCount.get();
+   }
+
+   /**
+    * Returns the count of responses received from network with body.
+    *
+    * @return network count
+    */
+   public long getNetworkCount() {
+      return networkCount.get();
+   }
+
+   private synchronized void commit(String key, File tmp, String etag, String lastModified, long expiresAt) throws IOException {
+      File body = new File(directory, key + BODY);
+      Long old = sizes.remove(key);
+      if (old != null) {
+         size -= old;
+      }
+      if (!tmp.renameTo(body)) {
+         tmp.delete();
+         removeFiles(key);
+         throw new IOException("Can't rename " + tmp);
+      }
+      writeMeta(key, etag, lastModified, expiresAt);
+      long length = body.length();
+      sizes.put(key, length);
+      size += length;
+      trimToSize();
+   }
+
+   private void writeMeta(String key, String etag, String lastModified, long expiresAt) throws IOException {
+      Properties properties = new Properties();
+      if (etag != null) {
+         properties.setProperty(ETAG, etag);
+      }
+      if (lastModified != null) {
+         properties.setProperty(LAST_MODIFIED, lastModified);
+      }
+      properties.setProperty(EXPIRES_AT, String.valueOf(expiresAt));
+      OutputStream out = new FileOutputStream(new File(directory, key + META));
+      try {
+         properties.store(out, null);
+      } finally {
+         out.close();
+      }
+   }
+
+   private void trimToSize() {
+      Iterator<Map.Entry<String, Long>> iterator = sizes.entrySet().iterator();
+      while (size > maxBytes && iterator.hasNext()) {
+         Map.Entry<String, Long> eldest = iterator.next();
+         iterator.remove();
+         size -= eldest.getValue();
+         new File(directory, eldest.getKey() + BODY).delete();
+         new File(directory, eldest.getKey() + META).delete();
+      }
+   }
+
+   private void removeFiles(String key) {
+      Long old = sizes.remove(key);
+      if (old != null) {
+         size -= old;
+      }
+      new File(directory, key + BODY).delete();
+      new File(directory, key + META).delete();
+   }
+
+   /**
+    * Lazy loading of the index, so the disk is not touched during DataProcessor initialization.
+    */
+   private void initialize() {
+      if (isInitialized) {
+         return;
+      }
+      isInitialized = true;
+      if (!directory.exists() && !directory.mkdirs()) {
+         Log.w("Can't create the http cache directory " + directory);
+         return;
+      }
+      File[] files = directory.listFiles();
+      if (files == null) {
+         return;
+      }
+      Arrays.sort(files, new Comparator<File>() {
+
+         @Override
+         public int compare(File lhs, File rhs) {
+            long l = lhs.lastModified();
+            long r = rhs.lastModified();
+            return l < r ? -1 : (l == r ? 0 : 1);
+         }
+
+      });
+      for (File file : files) {
+         String name = file.getName();
+         if (name.endsWith(BODY)) {
+            String key = name.substring(0, name.length() - BODY.length());
+            if (new File(directory, key + META).exists()) {
+               sizes.put(key, file.length());
+               size += file.length();
+            } else {
+               file.delete();
+            }
+         } else if (name.contains(TMP)) {
+            file.delete();
+         }
+      }
+      trimToSize();
+   }
+
+   private static long getExpiresAt(HttpURLConnection connection) {
+      long now = System.currentTimeMillis();
+      String cacheControl = connection.getHeaderField(CACHE_CONTROL);
+      if (cacheControl != null) {
+         String value = cacheControl.toLowerCase();
+         if (value.contains(NO_CACHE)) {
+            return 0;
+         }
+         int index = value.indexOf(MAX_AGE);
+         if (index >= 0) {
+            int start = index + MAX_AGE.length();
+            int end = start;
+            while (end < value.length() && Character.isDigit(value.charAt(end))) {
+               end++;
+            }
+            return now + parseLong(value.substring(start, end)) * 1000;
+         }
+      }
+      return connection.getExpiration();
+   }
+
+   private static long parseLong(String value) {
+      if (value == null) {
+         return 0;
+      }
+      try {
+         return Long.parseLong(value);
+      } catch (NumberFormatException e) {
+         return 0;
+      }
+   }
+
+   private static String toKey(String identity) {
+      try {
+         byte[] digest = MessageDigest.getInstance("SHA-1").digest(identity.getBytes("UTF-8"));
+         char[] chars = new char[digest.length * 2];
+         for (int i = 0; i < digest.length; i++) {
+            chars[i * 2] = HEX[(digest[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX[digest[i] & 0x0f];
+         }
+         return new String(chars);
+      } catch (NoSuchAlgorithmException | IOException e) {
+         return String.valueOf(identity.hashCode());
+      }
+   }
+
+   private static void closeQuietly(InputStream in) {
+      if (in != null) {
+         try {
+            in.close();
+         } catch (IOException e) {
+            // ignore
+         }
+      }
+   }
+
+   /**
+    * Stored response.
+    */
+   public static final class Entry {
+
+      private final String key;
+      private final File   bodyFile;
+      private final String etag;
+      private final String lastModified;
+      private final long   expiresAt;
+
+      Entry(String key, File bodyFile, String etag, String lastModified, long expiresAt) {
+         this.key = key;
+         this.bodyFile = bodyFile;
+         this.etag = etag;
+         this.lastModified = lastModified;
+         this.expiresAt = expiresAt;
+      }
+
+      /**
+       * Returns whether the entry can be served without revalidation.
+       *
+       * @return is fresh
+       */
+      public boolean isFresh() {
+         return System.currentTimeMillis() < expiresAt;
+      }
+
+      /**
+       * Returns whether the entry has validators for a conditional request.
+       *
+       * @return has validators
+       */
+      public boolean hasValidators() {
+         return etag != null || lastModified != null;
+      }
+
+      public File getBodyFile() {
+         return bodyFile;
+      }
+
+   }
+
+}
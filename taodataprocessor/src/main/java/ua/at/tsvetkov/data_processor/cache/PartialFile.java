@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.requests.Request;
+
+/**
+ * Partially downloaded cache file of the resumable request. The received bytes are kept in "&lt;cache file&gt;.part" and the validator
+ * of the response (strong ETag or Last-Modified) with its full length in "&lt;cache file&gt;.part.meta", so the interrupted download is
+ * continued by the Range request with If-Range. The server answers 206 Partial Content with the rest of the same response, or 200 with the
+ * whole changed one which replaces the part. The part is renamed to the cache file when its length is verified. The response without a
+ * validator or stored compressed can't be resumed, its part is deleted on failure. The download which is not resumable at all is written to
+ * the temporary file of the current thread. The cache file stored in gzip form is marked by the empty "&lt;cache file&gt;.gzip" file, so
+ * it is decoded on reading regardless of its content.
+ *
+ * @author lordtao
+ */
+public final class PartialFile {
+
+   private static final String PART             = ".part";
+   private static final String TMP              = ".tmp";
+   private static final String META             = ".meta";
+   private static final String COMPRESSED       = ".gzip";
+   private static final String VALIDATOR        = "Validator";
+   private static final String LENGTH           = "Length";
+   private static final String ETAG             = "ETag";
+   private static final String LAST_MODIFIED    = "Last-Modified";
+   private static final String CONTENT_RANGE    = "Content-Range";
+   private static final String CONTENT_ENCODING = "Content-Encoding";
+   private static final String BYTES            = "bytes ";
+   private static final String WEAK_ETAG        = "W/";
+   private static final String INVALID_RANGE    = "Partial response doesn't continue the file: ";
+   private static final String INCOMPLETE       = "Incomplete download, received ";
+   private static final String OF               = " of ";
+   private static final String CAN_T_RENAME     = "Can't rename ";
+   private static final String CAN_T_MARK       = "Can't mark the compressed file ";
+
+   private final File    file;
+   private final File    part;
+   private final File    meta;
+   private final boolean isResumeEnabled;
+   private       boolean isCompressed;
+   private       String  validator;
+   private       long    length = -1;
+   private       long    offset;
+
+   /**
+    * Load the state of the previous download of the file. The part without the validator is deleted.
+    *
+    * @param file            cache file
+    * @param isResumeEnabled is the download resumable, see {@link Request#isResumable()}
+    */
+   public PartialFile(File file, boolean isResumeEnabled) {
+      this.file = file;
+      this.isResumeEnabled = isResumeEnabled;
+      if (isResumeEnabled) {
+         part = new File(file.getPath() + PART);
+         meta = new File(file.getPath() + PART + META);
+         load();
+      } else {
+         part = new File(file.getPath() + TMP + Thread.currentThread().getId());
+         meta = new File(part.getPath() + META);
+      }
+   }
+
+   /**
+    * Returns the count of bytes already received, the rest is requested from this position.
+    *
+    * @return part length or 0
+    */
+   public long getOffset() {
+      return offset;
+   }
+
+   /**
+    * Returns the If-Range validator of the received part.
+    *
+    * @return strong ETag, Last-Modified or null
+    */
+   public String getValidator() {
+      return validator;
+   }
+
+   /**
+    * Returns the file where the response is written.
+    *
+    * @return part file
+    */
+   public File getPartFile() {
+      return part;
+   }
+
+   /**
+    * Returns whether the response to the Range request can be written to this part: it is not 416 Range Not Satisfiable and not the
+    * partial response which starts at the other position or is content encoded.
+    *
+    * @param request executed request
+    * @return false if the part must be deleted and the whole response requested again
+    */
+   public boolean isAccepted(Request request) {
+      int status = request.getStatusCode();
+      if (status == ConnectionConstants.HTTP_RANGE_NOT_SATISFIABLE) {
+         return false;
+      }
+      if (status != ConnectionConstants.HTTP_PARTIAL) {
+         return true;
+      }
+      long[] range = parseContentRange(request.getResponseHeader(CONTENT_RANGE));
+      return offset > 0 && range != null && range[0] == offset && isIdentity(request.getResponseHeader(CONTENT_ENCODING));
+   }
+
+   /**
+    * Open the output for the successful response: 206 Partial Content is appended to the part, 200 replaces it. The validator of the new
+    * response is saved before its body, so the download can be resumed even after the process is killed.
+    *
+    * @param request executed request with the status 200 or 206 accepted by {@link #isAccepted(Request)}
+    * @return part output
+    * @throws IOException if the part can't be opened
+    */
+   public FileOutputStream openOutput(Request request) throws IOException {
+      if (request.getStatusCode() == ConnectionConstants.HTTP_PARTIAL) {
+         long[] range = parseContentRange(request.getResponseHeader(CONTENT_RANGE));
+         if (range == null || range[0] != offset) {
+            delete();
+            throw new IOException(INVALID_RANGE + request.getResponseHeader(CONTENT_RANGE));
+         }
+         if (range[1] >= 0) {
+            length = range[1];
+         }
+         isCompressed = false;
+         return new FileOutputStream(part, true);
+      }
+      offset = 0;
+      isCompressed = request.isStoredCompressed();
+      length = request.getContentLength();
+      validator = isResumeEnabled && !request.isStoredCompressed() ? getValidator(request) : null;
+      if (validator != null) {
+         writeMeta();
+      } else {
+         meta.delete();
+      }
+      return new FileOutputStream(part);
+   }
+
+   /**
+    * Returns whether the part is kept after the failure to be continued later.
+    *
+    * @return is resumable
+    */
+   public boolean isResumable() {
+      return validator != null;
+   }
+
+   /**
+    * Returns whether the cache file is stored in gzip form and must be decoded on reading.
+    *
+    * @param file cache file
+    * @return is the file compressed
+    */
+   public static boolean isStoredCompressed(File file) {
+      return new File(file.getPath() + COMPRESSED).exists();
+   }
+
+   /**
+    * Verify the length of the received file and rename it to the cache file. The cache file stored compressed is marked as compressed.
+    *
+    * @throws IOException if the file is incomplete or can't be renamed, the incomplete resumable part is kept
+    */
+   public void commit() throws IOException {
+      long received = part.length();
+      if (length >= 0 && received != length) {
+         if (received > length || !isResumable()) {
+            delete();
+         }
+         throw new IOException(INCOMPLETE + received + OF + length + " bytes " + file);
+      }
+      File marker = new File(file.getPath() + COMPRESSED);
+      marker.delete();
+      if (!part.renameTo(file)) {
+         file.delete();
+         if (!part.renameTo(file)) {
+            delete();
+            throw new IOException(CAN_T_RENAME + part);
+         }
+      }
+      meta.delete();
+      if (isCompressed && !marker.createNewFile()) {
+         file.delete();
+         throw new IOException(CAN_T_MARK + file);
+      }
+   }
+
+   /**
+    * Keep the resumable part after the failed download, delete the other one.
+    */
+   public void abort() {
+      if (!isResumable()) {
+         delete();
+      }
+   }
+
+   /**
+    * Delete the part and its validator.
+    */
+   public void delete() {
+      part.delete();
+      meta.delete();
+      offset = 0;
+      validator = null;
+      length = -1;
+   }
+
+   private void load() {
+      if (!part.exists() || !meta.exists()) {
+         delete();
+         return;
+      }
+      Properties properties = new Properties();
+      InputStream in = null;
+      try {
+         in = new FileInputStream(meta);
+         properties.load(in);
+      } catch (IOException e) {
+         delete();
+         return;
+      } finally {
+         closeQuietly(in);
+      }
+      validator = properties.getProperty(VALIDATOR);
+      length = parseLong(properties.getProperty(LENGTH));
+      offset = part.length();
+      if (validator == null || (length >= 0 && offset >= length)) {
+         delete();
+      }
+   }
+
+   private void writeMeta() throws IOException {
+      Properties properties = new Properties();
+      properties.setProperty(VALIDATOR, validator);
+      properties.setProperty(LENGTH, String.valueOf(length));
+      OutputStream out = new FileOutputStream(meta);
+      try {
+         properties.store(out, null);
+      } finally {
+         out.close();
+      }
+   }
+
+   /**
+    * If-Range accepts only the strong ETag, the weak one is replaced by Last-Modified.
+    */
+   private static String getValidator(Request request) {
+      String etag = request.getResponseHeader(ETAG);
+      if (etag != null && !etag.startsWith(WEAK_ETAG)) {
+         return etag;
+      }
+      return request.getResponseHeader(LAST_MODIFIED);
+   }
+
+   /**
+    * Parse "bytes first-last/length" of the Content-Range header.
+    *
+    * @return first position and full length (-1 if unknown), or null if the header is invalid
+    */
+   private static long[] parseContentRange(String contentRange) {
+      if (contentRange == null || !contentRange.startsWith(BYTES)) {
+         return null;
+      }
+      int dash = contentRange.indexOf('-');
+      int slash = contentRange.indexOf('/');
+      if (dash < 0 || slash < dash) {
+         return null;
+      }
+      try {
+         long first = Long.parseLong(contentRange.substring(BYTES.length(), dash).trim());
+         String total = contentRange.substring(slash + 1).trim();
+         return new long[]{first, "*".equals(total) ? -1 : Long.parseLong(total)};
+      } catch (NumberFormatException e) {
+         return null;
+      }
+   }
+
+   private static boolean isIdentity(String contentEncoding) {
+      return contentEncoding == null || contentEncoding.trim().length() == 0 || "identity".equalsIgnoreCase(contentEncoding.trim());
+   }
+
+   private static long parseLong(String value) {
+      if (value == null) {
+         return -1;
+      }
+      try {
+         return Long.parseLong(value);
+      } catch (NumberFormatException e) {
+         return -1;
+      }
+   }
+
+   private static void closeQuietly(InputStream in) {
+      if (in != null) {
+         try {
+            in.close();
+         } catch (IOException e) {
+            // ignore
+         }
+      }
+   }
+
+}
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.cache;
+
+import android.support.v4.util.LruCache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the processed request results. Entries are keyed by request identity, weighed by the estimated payload size in bytes and
+ * expire after their time to live. An expired entry still can be served during the stale-while-revalidate period while the fresh data is
+ * loading.
+ *
+ * @author lordtao
+ */
+public class ResultCache {
+
+   private final Entries    entries;
+   private final AtomicLong hitCount      = new AtomicLong();
+   private final AtomicLong staleHitCount = new AtomicLong();
+   private final AtomicLong missCount     = new AtomicLong();
+   private final AtomicLong evictionCount = new AtomicLong();
+
+   /**
+    * @param maxBytes max summary size of the cached results in bytes
+    */
+   public ResultCache(int maxBytes) {
+      entries = new Entries(maxBytes);
+   }
+
+   /**
+    * Returns the fresh or the stale but still usable entry for the key, or null if there is no such entry.
+    *
+    * @param key request identity
+    * @return cached entry or null
+    */
+   public Entry get(String key) {
+      Entry entry = entries.get(key);
+      long now = System.currentTimeMillis();
+      if (entry == null) {
+         missCount.incrementAndGet();
+         return null;
+      }
+      if (entry.isFresh(now)) {
+         hitCount.incrementAndGet();
+         return entry;
+      }
+      if (entry.isUsable(now)) {
+         staleHitCount.incrementAndGet();
+         return entry;
+      }
+      entries.remove(key);
+      missCount.incrementAndGet();
+      return null;
+   }
+
+   /**
+    * Put the result into the cache.
+    *
+    * @param key                  request identity
+    * @param result               processed result
+    * @param statusCode           status code of the request
+    * @param message              status message of the request
+    * @param size                 estimated payload size in bytes
+    * @param ttl                  time to live in milliseconds
+    * @param staleWhileRevalidate time in milliseconds after expiration during which the entry still can be served
+    */
+   public void put(String key, Object result, int statusCode, String message, long size, long ttl, long staleWhileRevalidate) {
+      Entry entry = new Entry(result, statusCode, message, size, System.currentTimeMillis(), ttl, staleWhileRevalidate);
+      if (entry.size > entries.maxSize()) {
+         entries.remove(key);
+         return;
+      }
+      entries.put(key, entry);
+   }
+
+   /**
+    * Remove the entry for the key.
+    *
+    * @param key request identity
+    */
+   public void remove(String key) {
+      entries.remove(key);
+   }
+
+   /**
+    * Remove all entries.
+    */
+   public void clear() {
+      entries.evictAll();
+   }
+
+   /**
+    * Returns the summary size of the cached results in bytes.
+    *
+    * @return size in bytes
+    */
+   public int size() {
+      return entries.size();
+   }
+
+   /**
+    * Returns the max summary size of the cached results in bytes.
+    *
+    * @return max size in bytes
+    */
+   public int maxSize() {
+      return entries.maxSize();
+   }
+
+   /**
+    * Returns the count of requests served with fresh entries.
+    *
+    * @return hit count
+    */
+   public long getHitCount() {
+      return hitCount.get();
+   }
+
+   /**
+    * Returns the count of requests served with stale entries during the stale-while-revalidate period.
+    *
+    * @return stale hit count
+    */
+   public long getStaleHitCount() {
+      return staleHitCount.get();
+   }
+
+   /**
+    * Returns the count of requests which did not find a usable entry.
+    *
+    * @return miss count
+    */
+   public long getMissCount() {
+      return missCount.get();
+   }
+
+   /**
+    * Returns the count of entries evicted to keep the cache within its max size.
+    *
+    * @return eviction count
+    */
+   public long getEvictionCount() {
+      return evictionCount.get();
+   }
+
+   @Override
+   public String toString() {
+      return "ResultCache [size=" + size() + ", maxSize=" + maxSize() + ", hits=" + hitCount + ", staleHits=" + staleHitCount + ", misses="
+              + missCount + ", evictions=" + evictionCount + "]";
+   }
+
+   private class Entries extends LruCache<String, Entry> {
+
+      Entries(int maxSize) {
+         super(maxSize);
+      }
+
+      @Override
+      protected int sizeOf(String key, Entry value) {
+         return value.size;
+      }
+
+      @Override
+      protected void entryRemoved(boolean evicted, String key, Entry oldValue, Entry newValue) {
+         if (evicted) {
+            evictionCount.incrementAndGet();
+         }
+      }
+
+   }
+
+   /**
+    * Cached result with its status and expiration times.
+    */
+   public static final class Entry {
+
+      private final Object result;
+      private final int    statusCode;
+      private final String message;
+      private final int    size;
+      private final long   expiresAt;
+      private final long   staleUntil;
+
+      Entry(Object result, int statusCode, String message, long size, long createdAt, long ttl, long staleWhileRevalidate) {
+         this.result = result;
+         this.statusCode = statusCode;
+         this.message = message;
+         this.size = (int) Math.max(1, Math.min(size, Integer.MAX_VALUE));
+         this.expiresAt = saturatedAdd(createdAt, ttl);
+         this.staleUntil = saturatedAdd(expiresAt, staleWhileRevalidate);
+      }
+
+      private static long saturatedAdd(long time, long delta) {
+         long sum = time + delta;
+         return sum < time ? Long.MAX_VALUE : sum;
+      }
+
+      public Object getResult() {
+         return result;
+      }
+
+      public int getStatusCode() {
+         return statusCode;
+      }
+
+      public String getMessage() {
+         return message;
+      }
+
+      public int getSize() {
+         return size;
+      }
+
+      /**
+       * Returns whether the entry is not expired yet.
+       *
+       * @param now current time in milliseconds
+       * @return is fresh
+       */
+      public boolean isFresh(long now) {
+         return now < expiresAt;
+      }
+
+      /**
+       * Returns whether the entry is fresh or it is in the stale-while-revalidate period.
+       *
+       * @param now current time in milliseconds
+       * @return is usable
+       */
+      public boolean isUsable(long now) {
+         return now < staleUntil;
+      }
+
+   }
+
+}
@@ -16,6 +16,22 @@ public final class ConnectionConstants {
     * No internet connection
     */
    public static final int NO_INTERNET_CONNECTION = 1001;
+   /**
+    * Request was not executed because the queue of the thread pool is full.
+    */
+   public static final int REQUEST_REJECTED = 1002;
+   /**
+    * Request was cancelled.
+    */
+   public static final int REQUEST_CANCELLED = 1003;
+   /**
+    * Request was cancelled because its deadline was exceeded.
+    */
+   public static final int DEADLINE_EXCEEDED = 1004;
+   /**
+    * Request was not sent because the circuit breaker of the host is open after the series of failures.
+    */
+   public static final int CIRCUIT_OPEN = 1005;
    /**
     * HTTP Status-Code 202: Accepted.
     */
@@ -136,11 +152,23 @@ public final class ConnectionConstants {
     * HTTP Status-Code 303: See Other.
     */
    public static final int HTTP_SEE_OTHER = HttpURLConnection.HTTP_SEE_OTHER;
+   /**
+    * HTTP Status-Code 503: Service Unavailable.
+    */
+   public static final int HTTP_UNAVAILABLE = HttpURLConnection.HTTP_UNAVAILABLE;
+   /**
+    * HTTP Status-Code 416: Range Not Satisfiable.
+    */
+   public static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
 
    @Retention(RetentionPolicy.SOURCE)
    @IntDef({
            FILE_SUCCESS,
            NO_INTERNET_CONNECTION,
+           REQUEST_REJECTED,
+           REQUEST_CANCELLED,
+           DEADLINE_EXCEEDED,
+           CIRCUIT_OPEN,
            HttpURLConnection.HTTP_ACCEPTED,
            HttpURLConnection.HTTP_BAD_GATEWAY,
            HttpURLConnection.HTTP_BAD_METHOD,
@@ -170,7 +198,9 @@ public final class ConnectionConstants {
            HttpURLConnection.HTTP_PROXY_AUTH,
            HttpURLConnection.HTTP_REQ_TOO_LONG,
            HttpURLConnection.HTTP_RESET,
-           HttpURLConnection.HTTP_SEE_OTHER
+           HttpURLConnection.HTTP_SEE_OTHER,
+           HttpURLConnection.HTTP_UNAVAILABLE,
+           HTTP_RANGE_NOT_SATISFIABLE
    })
 
    public @interface ConnectionResponseCode {
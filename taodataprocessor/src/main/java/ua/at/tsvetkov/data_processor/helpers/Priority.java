@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.helpers;
+
+/**
+ * Priority of the asynchronous request in the thread pool queue. Requests with the higher priority are executed first, the requests with
+ * equal priority are executed in the order of submission.
+ *
+ * @author lordtao
+ */
+public enum Priority {
+    /**
+     * The request the user is waiting for right now.
+     */
+    IMMEDIATE,
+    /**
+     * The default priority.
+     */
+    NORMAL,
+    /**
+     * Background prefetch. Can be dropped from the full queue.
+     */
+    PREFETCH
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.interfaces;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The data object which can be filled directly from the memory-mapped file. The files up to
+ * {@link ua.at.tsvetkov.data_processor.DataProcessorConfiguration#getFileMappingLimit() the mapping limit} are passed to
+ * {@link #fillFromByteBuffer(ByteBuffer)}, the larger files, the compressed files and the network responses to
+ * {@link #fillFromInputStream(java.io.InputStream)}.
+ *
+ * @author lordtao
+ */
+public interface ByteBufferDataInterface extends InputStreamDataInterface {
+
+    void fillFromByteBuffer(ByteBuffer buffer) throws IOException;
+
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded pool of I/O buffers shared by the request, download and parsing code. The pool is striped by thread to avoid contention, each
+ * stripe keeps a few free buffers. When the stripe is empty a new buffer is allocated, when it is full the released buffer is left to GC.
+ *
+ * @author lordtao
+ */
+public final class BufferPool {
+
+   public static final int BUFFER_SIZE = 8 * 1024;
+
+   private static final int STRIPE_SLOTS = 4;
+   private static final int STRIPES      = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2);
+
+   private static final AtomicReferenceArray<byte[]> SLOTS = new AtomicReferenceArray<>(STRIPES * STRIPE_SLOTS);
+
+   private static final AtomicLong ACQUIRE_COUNT    = new AtomicLong();
+   private static final AtomicLong ALLOCATION_COUNT = new AtomicLong();
+   private static final AtomicLong RELEASE_COUNT    = new AtomicLong();
+   private static final AtomicLong DROP_COUNT       = new AtomicLong();
+
+   private BufferPool() {
+   }
+
+   /**
+    * Take the free buffer of {@link #BUFFER_SIZE} bytes from the pool or allocate the new one. The buffer must be returned with
+    * {@link #release(byte[])} when it is not used anymore.
+    *
+    * @return buffer
+    */
+   public static byte[] acquire() {
+      ACQUIRE_COUNT.incrementAndGet();
+      int base = getStripe();
+      for (int i = 0; i < STRIPE_SLOTS; i++) {
+         if (SLOTS.get(base + i) != null) {
+            byte[] buffer = SLOTS.getAndSet(base + i, null);
+            if (buffer != null) {
+               return buffer;
+            }
+         }
+      }
+      ALLOCATION_COUNT.incrementAndGet();
+      return new byte[BUFFER_SIZE];
+   }
+
+   /**
+    * Return the buffer to the pool. Buffers of other sizes are ignored.
+    *
+    * @param buffer buffer taken by {@link #acquire()}
+    */
+   public static void release(byte[] buffer) {
+      if (buffer == null || buffer.length != BUFFER_SIZE) {
+         return;
+      }
+      RELEASE_COUNT.incrementAndGet();
+      int base = getStripe();
+      for (int i = 0; i < STRIPE_SLOTS; i++) {
+         if (SLOTS.compareAndSet(base + i, null, buffer)) {
+            return;
+         }
+      }
+      DROP_COUNT.incrementAndGet();
+   }
+
+   private static int getStripe() {
+      return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIPE_SLOTS;
+   }
+
+   /**
+    * Returns the count of taken buffers.
+    *
+    * @return acquire count
+    */
+   public static long getAcquireCount() {
+      return ACQUIRE_COUNT.get();
+   }
+
+   /**
+    * Returns the count of buffers allocated because the pool was empty.
+    *
+    * @return allocation count
+    */
+   public static long getAllocationCount() {
+      return ALLOCATION_COUNT.get();
+   }
+
+   /**
+    * Returns the summary size of the buffers allocated because the pool was empty.
+    *
+    * @return allocated bytes
+    */
+   public static long getAllocatedBytes() {
+      return ALLOCATION_COUNT.get() * BUFFER_SIZE;
+   }
+
+   /**
+    * Returns the count of returned buffers.
+    *
+    * @return release count
+    */
+   public static long getReleaseCount() {
+      return RELEASE_COUNT.get();
+   }
+
+   /**
+    * Returns the count of returned buffers left to GC because the pool was full.
+    *
+    * @return drop count
+    */
+   public static long getDropCount() {
+      return DROP_COUNT.get();
+   }
+
+   /**
+    * Returns pool statistics for the log.
+    *
+    * @return statistics string
+    */
+   public static String getStatistics() {
+      return "BufferPool [acquired=" + ACQUIRE_COUNT + ", allocated=" + ALLOCATION_COUNT + ", released=" + RELEASE_COUNT + ", dropped="
+              + DROP_COUNT + "]";
+   }
+
+}
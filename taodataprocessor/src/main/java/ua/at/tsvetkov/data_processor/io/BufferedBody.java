@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * Response body read ahead into the chunks taken from the {@link BufferPool}. It allows to release the connection before the parsing and
+ * hand off the body to the other thread. The chunks are returned to the pool when the stream opened by {@link #openStream(InputStream)}
+ * is closed.
+ *
+ * @author lordtao
+ */
+public final class BufferedBody {
+
+   private final ArrayList<byte[]> chunks = new ArrayList<>();
+   private int     lastChunkSize;
+   private long    size;
+   private boolean isComplete;
+
+   private BufferedBody() {
+   }
+
+   /**
+    * Read the stream until its end or the limit.
+    *
+    * @param in    source stream
+    * @param limit max count of bytes to read
+    * @return read body, check {@link #isComplete()} whether the whole stream was read
+    * @throws IOException if the reading fails, the taken chunks are released
+    */
+   public static BufferedBody read(InputStream in, long limit) throws IOException {
+      BufferedBody body = new BufferedBody();
+      try {
+         body.fill(in, limit);
+      } catch (IOException e) {
+         body.release();
+         throw e;
+      }
+      return body;
+   }
+
+   private void fill(InputStream in, long limit) throws IOException {
+      byte[] chunk = null;
+      while (size < limit) {
+         if (chunk == null || lastChunkSize == chunk.length) {
+            chunk = BufferPool.acquire();
+            chunks.add(chunk);
+            lastChunkSize = 0;
+         }
+         int read = in.read(chunk, lastChunkSize, (int) Math.min(chunk.length - lastChunkSize, limit - size));
+         if (read == -1) {
+            isComplete = true;
+            return;
+         }
+         lastChunkSize += read;
+         size += read;
+      }
+      int next = in.read();
+      if (next == -1) {
+         isComplete = true;
+         return;
+      }
+      if (chunk == null || lastChunkSize == chunk.length) {
+         chunk = BufferPool.acquire();
+         chunks.add(chunk);
+         lastChunkSize = 0;
+      }
+      chunk[lastChunkSize++] = (byte) next;
+      size++;
+   }
+
+   /**
+    * Returns whether the whole source stream was read.
+    *
+    * @return is complete
+    */
+   public boolean isComplete() {
+      return isComplete;
+   }
+
+   public long size() {
+      return size;
+   }
+
+   /**
+    * Open the stream over the read bytes followed by the rest of the source stream.
+    *
+    * @param rest the source stream if the body is not complete, or null
+    * @return body stream
+    */
+   public InputStream openStream(InputStream rest) {
+      return new ChunksInputStream(rest);
+   }
+
+   private void release() {
+      for (byte[] chunk : chunks) {
+         BufferPool.release(chunk);
+      }
+      chunks.clear();
+   }
+
+   private final class ChunksInputStream extends InputStream {
+
+      private final InputStream rest;
+      private int chunkIndex;
+      private int position;
+
+      private ChunksInputStream(InputStream rest) {
+         this.rest = rest;
+      }
+
+      @Override
+      public int read() throws IOException {
+         byte[] one = new byte[1];
+         int read = read(one, 0, 1);
+         return read == -1 ? -1 : one[0] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int length) throws IOException {
+         if (length == 0) {
+            return 0;
+         }
+         while (chunkIndex < chunks.size()) {
+            int chunkSize = chunkIndex == chunks.size() - 1 ? lastChunkSize : chunks.get(chunkIndex).length;
+            if (position < chunkSize) {
+               int count = Math.min(length, chunkSize - position);
+               System.arraycopy(chunks.get(chunkIndex), position, buffer, offset, count);
+               position += count;
+               return count;
+            }
+            chunkIndex++;
+            position = 0;
+         }
+         if (rest != null) {
+            return rest.read(buffer, offset, length);
+         }
+         return -1;
+      }
+
+      @Override
+      public int available() throws IOException {
+         if (chunkIndex < chunks.size()) {
+            int chunkSize = chunkIndex == chunks.size() - 1 ? lastChunkSize : chunks.get(chunkIndex).length;
+            return chunkSize - position;
+         }
+         return rest != null ? rest.available() : 0;
+      }
+
+      @Override
+      public void close() throws IOException {
+         chunkIndex = Integer.MAX_VALUE;
+         release();
+         if (rest != null) {
+            rest.close();
+         }
+      }
+
+   }
+
+}
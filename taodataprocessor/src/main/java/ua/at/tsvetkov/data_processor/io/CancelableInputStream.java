@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * InputStream which stops the reading with {@link InterruptedIOException} as soon as the flag is set.
+ *
+ * @author lordtao
+ */
+public class CancelableInputStream extends FilterInputStream {
+
+   private static final String CANCELLED = "Request is cancelled";
+
+   private final AtomicBoolean isCancelled;
+
+   /**
+    * @param in          source stream
+    * @param isCancelled cancellation flag
+    */
+   public CancelableInputStream(InputStream in, AtomicBoolean isCancelled) {
+      super(in);
+      this.isCancelled = isCancelled;
+   }
+
+   @Override
+   public int read() throws IOException {
+      checkCancelled();
+      return in.read();
+   }
+
+   @Override
+   public int read(byte[] buffer, int offset, int length) throws IOException {
+      checkCancelled();
+      return in.read(buffer, offset, length);
+   }
+
+   @Override
+   public long skip(long n) throws IOException {
+      checkCancelled();
+      return in.skip(n);
+   }
+
+   private void checkCancelled() throws InterruptedIOException {
+      if (isCancelled.get()) {
+         throw new InterruptedIOException(CANCELLED);
+      }
+   }
+
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Streaming decompression of the gzip and deflate http content encodings.
+ *
+ * @author lordtao
+ */
+public final class ContentDecoder {
+
+   public static final String GZIP            = "gzip";
+   public static final String DEFLATE         = "deflate";
+   public static final String IDENTITY        = "identity";
+   public static final String ACCEPT_ENCODING = GZIP + ", " + DEFLATE;
+
+   private static final int ZLIB_DEFLATE = 8;
+
+   private ContentDecoder() {
+   }
+
+   /**
+    * Returns whether the stream with the given Content-Encoding can be decoded.
+    *
+    * @param contentEncoding value of the Content-Encoding header, may be null
+    * @return true for gzip and deflate
+    */
+   public static boolean isSupported(String contentEncoding) {
+      return GZIP.equalsIgnoreCase(trim(contentEncoding)) || DEFLATE.equalsIgnoreCase(trim(contentEncoding));
+   }
+
+   /**
+    * Wrap the stream with the decoder of the given Content-Encoding. The stream is returned as is for identity or unknown encodings and
+    * for the empty body (204, HEAD or the empty error) which has no gzip header.
+    *
+    * @param in              encoded stream
+    * @param contentEncoding value of the Content-Encoding header, may be null
+    * @return decoded stream
+    * @throws IOException if the gzip header is broken
+    */
+   public static InputStream decode(InputStream in, String contentEncoding) throws IOException {
+      String encoding = trim(contentEncoding);
+      if (GZIP.equalsIgnoreCase(encoding)) {
+         PushbackInputStream pushback = new PushbackInputStream(in, 1);
+         int first = pushback.read();
+         if (first == -1) {
+            return pushback;
+         }
+         pushback.unread(first);
+         return new GZIPInputStream(pushback);
+      } else if (DEFLATE.equalsIgnoreCase(encoding)) {
+         return newInflaterStream(in);
+      }
+      return in;
+   }
+
+   /**
+    * Open the file saved from the response. The file stored in gzip form is decoded transparently.
+    *
+    * @param file         saved file
+    * @param isCompressed is the file stored in gzip form, the content of the file is never sniffed
+    * @return file content
+    * @throws IOException if the file can not be opened
+    */
+   public static InputStream openFile(File file, boolean isCompressed) throws IOException {
+      return openFile(file, isCompressed, 0);
+   }
+
+   /**
+    * Open the file saved from the response. The file up to the mapping limit is memory-mapped, the file stored in gzip form is decoded
+    * transparently.
+    *
+    * @param file         saved file
+    * @param isCompressed is the file stored in gzip form, the content of the file is never sniffed
+    * @param mappingLimit max size of the mapped file in bytes, 0 to disable the mapping
+    * @return file content, {@link MappedInputStream} if the not compressed file is mapped
+    * @throws IOException if the file can not be opened
+    */
+   public static InputStream openFile(File file, boolean isCompressed, long mappingLimit) throws IOException {
+      InputStream in;
+      if (MappedInputStream.isMappable(file, mappingLimit)) {
+         in = new MappedInputStream(file);
+      } else {
+         in = new BufferedInputStream(new FileInputStream(file));
+      }
+      if (isCompressed) {
+         return decode(in, GZIP);
+      }
+      return in;
+   }
+
+   /**
+    * Http "deflate" must be zlib wrapped, but some servers send the raw deflate data. The zlib header is checked to pick the right one.
+    */
+   private static InputStream newInflaterStream(InputStream in) throws IOException {
+      PushbackInputStream pushback = new PushbackInputStream(in, 2);
+      int cmf = pushback.read();
+      if (cmf == -1) {
+         return pushback;
+      }
+      int flg = pushback.read();
+      if (flg != -1) {
+         pushback.unread(flg);
+      }
+      pushback.unread(cmf);
+      boolean isZlib = flg != -1 && (cmf & 0x0f) == ZLIB_DEFLATE && ((cmf << 8) | flg) % 31 == 0;
+      return new InflaterInputStream(pushback, new Inflater(!isZlib)) {
+
+         @Override
+         public void close() throws IOException {
+            super.close();
+            inf.end();
+         }
+
+      };
+   }
+
+   private static String trim(String contentEncoding) {
+      return contentEncoding == null ? null : contentEncoding.trim();
+   }
+
+}
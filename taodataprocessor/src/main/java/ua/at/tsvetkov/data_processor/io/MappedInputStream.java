@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * InputStream view of the memory-mapped file. The file content is read by the parser directly from the page cache without the copying
+ * into the heap buffers, the processors which support it get the whole content as {@link ByteBuffer}. The mapping doesn't need the open
+ * file and is released by the garbage collector when all views of it are unreachable.
+ *
+ * @author lordtao
+ */
+public final class MappedInputStream extends InputStream {
+
+   private final ByteBuffer buffer;
+   private int     markPosition;
+   private boolean isClosed;
+
+   /**
+    * Map the whole file into memory.
+    *
+    * @param file file to map, check it by {@link #isMappable(File, long)}
+    * @throws IOException if the file can not be opened or mapped
+    */
+   public MappedInputStream(File file) throws IOException {
+      RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+      try {
+         FileChannel channel = randomAccessFile.getChannel();
+         buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      } finally {
+         randomAccessFile.close();
+      }
+   }
+
+   private MappedInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+   }
+
+   /**
+    * Open the stream over the remaining content of the buffer, for example the mapped file passed to the processor as the ByteBuffer.
+    * The position of the buffer is not changed.
+    *
+    * @param buffer content
+    * @return stream positioned at the beginning of the content
+    */
+   public static MappedInputStream wrap(ByteBuffer buffer) {
+      return new MappedInputStream(buffer.slice());
+   }
+
+   /**
+    * Returns whether the file should be mapped: it is not empty and not larger than the limit.
+    *
+    * @param file         file to check
+    * @param mappingLimit max size of the mapped file in bytes, 0 to disable the mapping
+    * @return true if the file should be mapped
+    */
+   public static boolean isMappable(File file, long mappingLimit) {
+      long length = file.length();
+      return length > 0 && length <= mappingLimit && length <= Integer.MAX_VALUE;
+   }
+
+   /**
+    * Returns the whole mapped content independently of the position of this stream.
+    *
+    * @return read only buffer positioned at the beginning of the file
+    */
+   public ByteBuffer getBuffer() {
+      ByteBuffer content = buffer.duplicate();
+      content.clear();
+      return content;
+   }
+
+   /**
+    * Open the new stream over the same mapping at the beginning of the file. It stays readable after this stream is closed.
+    *
+    * @return new stream
+    */
+   public MappedInputStream newStream() {
+      return new MappedInputStream(getBuffer());
+   }
+
+   /**
+    * Returns the size of the mapped file.
+    *
+    * @return size in bytes
+    */
+   public long length() {
+      return buffer.capacity();
+   }
+
+   @Override
+   public int read() throws IOException {
+      if (isClosed || !buffer.hasRemaining()) {
+         return -1;
+      }
+      return buffer.get() & 0xff;
+   }
+
+   @Override
+   public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (offset < 0 || length < 0 || length > bytes.length - offset) {
+         throw new IndexOutOfBoundsException();
+      }
+      if (length == 0) {
+         return 0;
+      }
+      if (isClosed || !buffer.hasRemaining()) {
+         return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+   }
+
+   @Override
+   public long skip(long n) throws IOException {
+      if (isClosed || n <= 0) {
+         return 0;
+      }
+      int count = (int) Math.min(n, buffer.remaining());
+      buffer.position(buffer.position() + count);
+      return count;
+   }
+
+   @Override
+   public int available() throws IOException {
+      return isClosed ? 0 : buffer.remaining();
+   }
+
+   @Override
+   public boolean markSupported() {
+      return true;
+   }
+
+   @Override
+   public synchronized void mark(int readLimit) {
+      markPosition = buffer.position();
+   }
+
+   @Override
+   public synchronized void reset() throws IOException {
+      buffer.position(markPosition);
+   }
+
+   @Override
+   public void close() throws IOException {
+      isClosed = true;
+   }
+
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes the InputStream into chars with the given charset. The char buffer is pre-sized from the known content length, so the data is
+ * decoded directly into its final place without intermediate byte arrays and String copies. The content length is not trusted above
+ * {@link #MAX_INITIAL_CAPACITY} chars, the larger buffer is grown while the data is really received. The read buffer is taken from the
+ * {@link BufferPool}.
+ *
+ * @author lordtao
+ */
+public final class StreamDecoder {
+
+   private static final int BUFFER_SIZE          = BufferPool.BUFFER_SIZE;
+   private static final int MAX_INITIAL_CAPACITY = 2 * 1024 * 1024;
+
+   private StreamDecoder() {
+   }
+
+   /**
+    * Read the stream to the end and decode it.
+    *
+    * @param in            source stream
+    * @param contentLength length of the stream in bytes or -1 if unknown
+    * @param charset       charset of the data
+    * @return flipped char buffer with the decoded data
+    * @throws IOException
+    */
+   public static CharBuffer decode(InputStream in, long contentLength, Charset charset) throws IOException {
+      CharsetDecoder decoder = charset.newDecoder()
+              .onMalformedInput(CodingErrorAction.REPLACE)
+              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      int capacity = BUFFER_SIZE;
+      if (contentLength > 0) {
+         capacity = (int) Math.min(MAX_INITIAL_CAPACITY, (long) Math.ceil(contentLength * (double) decoder.maxCharsPerByte()));
+      }
+      CharBuffer chars = CharBuffer.allocate(capacity);
+      byte[] buffer = BufferPool.acquire();
+      try {
+         ByteBuffer bytes = ByteBuffer.wrap(buffer);
+         boolean isEnd = false;
+         while (!isEnd) {
+            int read = in.read(buffer, bytes.position(), bytes.remaining());
+            if (read == -1) {
+               isEnd = true;
+            } else {
+               bytes.position(bytes.position() + read);
+            }
+            bytes.flip();
+            while (decoder.decode(bytes, chars, isEnd).isOverflow()) {
+               chars = grow(chars);
+            }
+            bytes.compact();
+         }
+      } finally {
+         BufferPool.release(buffer);
+      }
+      CoderResult result;
+      while ((result = decoder.flush(chars)).isOverflow()) {
+         chars = grow(chars);
+      }
+      if (result.isError()) {
+         result.throwException();
+      }
+      chars.flip();
+      return chars;
+   }
+
+   private static CharBuffer grow(CharBuffer chars) {
+      CharBuffer bigger = CharBuffer.allocate(Math.max(chars.capacity() * 2, BUFFER_SIZE));
+      chars.flip();
+      bigger.put(chars);
+      return bigger;
+   }
+
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * InputStream which copies all read bytes to the output stream. When the source stream is read to the end, the output is closed and
+ * {@link #onComplete()} is called. If the stream is closed before the end or the output failed, {@link #onAbort()} is called instead. The
+ * failure of the output never breaks the reading.
+ *
+ * @author lordtao
+ */
+public class TeeInputStream extends FilterInputStream {
+
+   private OutputStream out;
+   private boolean      isFinished;
+   private boolean      isComplete;
+   private long         writeTime;
+
+   public TeeInputStream(InputStream in, OutputStream out) {
+      super(in);
+      this.out = out;
+   }
+
+   @Override
+   public int read() throws IOException {
+      int b = in.read();
+      if (b == -1) {
+         finish(true);
+      } else if (out != null) {
+         long start = System.nanoTime();
+         try {
+            out.write(b);
+         } catch (IOException e) {
+            finish(false);
+         }
+         writeTime += System.nanoTime() - start;
+      }
+      return b;
+   }
+
+   @Override
+   public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = in.read(buffer, offset, length);
+      if (read == -1) {
+         finish(true);
+      } else if (read > 0 && out != null) {
+         long start = System.nanoTime();
+         try {
+            out.write(buffer, offset, read);
+         } catch (IOException e) {
+            finish(false);
+         }
+         writeTime += System.nanoTime() - start;
+      }
+      return read;
+   }
+
+   @Override
+   public long skip(long n) throws IOException {
+      byte[] buffer = new byte[(int) Math.min(n, 4096)];
+      long skipped = 0;
+      while (skipped < n) {
+         int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+         if (read == -1) {
+            break;
+         }
+         skipped += read;
+      }
+      return skipped;
+   }
+
+   @Override
+   public boolean markSupported() {
+      return false;
+   }
+
+   @Override
+   public void close() throws IOException {
+      try {
+         finish(false);
+      } finally {
+         in.close();
+      }
+   }
+
+   /**
+    * Returns whether all bytes of the source were copied successfully.
+    *
+    * @return is complete
+    */
+   public boolean isComplete() {
+      return isComplete;
+   }
+
+   /**
+    * Returns the time spent on writing to the output.
+    *
+    * @return time in nanoseconds
+    */
+   public long getWriteTime() {
+      return writeTime;
+   }
+
+   private void finish(boolean isSuccess) {
+      if (isFinished) {
+         return;
+      }
+      isFinished = true;
+      try {
+         out.close();
+      } catch (IOException e) {
+         isSuccess = false;
+      }
+      out = null;
+      if (isSuccess) {
+         try {
+            onComplete();
+            isComplete = true;
+         } catch (IOException e) {
+            onAbort();
+         }
+      } else {
+         onAbort();
+      }
+   }
+
+   /**
+    * Called when all bytes of the source stream were copied to the closed output.
+    *
+    * @throws IOException if the result can't be saved
+    */
+   protected void onComplete() throws IOException {
+   }
+
+   /**
+    * Called when the copy is incomplete: the stream was closed before the end or the output failed.
+    */
+   protected void onAbort() {
+   }
+
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.metrics;
+
+import java.net.InetAddress;
+
+import ua.at.tsvetkov.data_processor.requests.Request;
+
+/**
+ * Listener of the request lifecycle events for tracing of single requests. Override the needed methods, all of them do nothing by
+ * default. Register it for all requests by {@link ua.at.tsvetkov.data_processor.DataProcessorConfiguration.Builder#setEventListener(EventListener)}
+ * or for one request by {@link Request#setEventListener(EventListener)}.
+ * <p/>
+ * The methods are called from the request threads, so the implementation must be thread safe, fast and must not throw exceptions. The
+ * DNS lookup is done by the library only when the listener is registered, without it the lookup is done by the connection itself.
+ *
+ * @author lordtao
+ */
+public abstract class EventListener {
+
+   /**
+    * The request execution is started.
+    */
+   public void callStart(Request request) {
+   }
+
+   /**
+    * The DNS lookup of the host is started.
+    */
+   public void dnsStart(Request request, String host) {
+   }
+
+   /**
+    * The DNS lookup of the host is finished.
+    *
+    * @param addresses found addresses, empty if the lookup is failed
+    */
+   public void dnsEnd(Request request, String host, InetAddress[] addresses) {
+   }
+
+   /**
+    * The connection to the host is started.
+    */
+   public void connectStart(Request request) {
+   }
+
+   /**
+    * The connection to the host is established.
+    */
+   public void connectEnd(Request request) {
+   }
+
+   /**
+    * The request body is sent.
+    *
+    * @param length length of the body in bytes, -1 if unknown
+    */
+   public void requestBodyEnd(Request request, long length) {
+   }
+
+   /**
+    * The response headers are received.
+    *
+    * @param statusCode response status
+    */
+   public void responseHeadersEnd(Request request, int statusCode) {
+   }
+
+   /**
+    * The response body is read before the parsing: saved to the cache file or buffered.
+    *
+    * @param length count of read bytes
+    */
+   public void responseBodyEnd(Request request, long length) {
+   }
+
+   /**
+    * The response is taken from the http disk cache or the existing cache file without the download.
+    */
+   public void cacheHit(Request request) {
+   }
+
+   /**
+    * The parsing of the response is started.
+    */
+   public void parseStart(Request request) {
+   }
+
+   /**
+    * The parsing of the response is finished.
+    */
+   public void parseEnd(Request request) {
+   }
+
+   /**
+    * The result is delivered to the callback.
+    *
+    * @param statusCode result status
+    */
+   public void callbackDelivered(Request request, int statusCode) {
+   }
+
+   /**
+    * The request is failed, cancelled or rejected.
+    *
+    * @param statusCode failure status
+    */
+   public void callFailed(Request request, int statusCode) {
+   }
+
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram with log-linear buckets like HdrHistogram: every power of two range is split into 16 linear buckets, so any
+ * recorded value is reported with the error below 6.25%. Values from 0 to 2^37 are stored in the fixed array of 560 counters, larger
+ * values are stored as 2^37.
+ *
+ * @author lordtao
+ */
+public class Histogram {
+
+   private static final int  SUB_BITS      = 4;
+   private static final int  SUB_BUCKETS   = 1 << SUB_BITS;
+   private static final int  MAX_EXPONENT  = 37;
+   private static final long MAX_VALUE     = 1L << MAX_EXPONENT;
+   private static final int  BUCKETS_COUNT = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+   private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_COUNT);
+   private final AtomicLong      count  = new AtomicLong();
+   private final AtomicLong      sum    = new AtomicLong();
+   private final AtomicLong      max    = new AtomicLong();
+
+   /**
+    * Record the value.
+    *
+    * @param value not negative value, negative values are recorded as 0
+    */
+   public void record(long value) {
+      if (value < 0) {
+         value = 0;
+      } else if (value > MAX_VALUE) {
+         value = MAX_VALUE;
+      }
+      counts.incrementAndGet(indexOf(value));
+      count.incrementAndGet();
+      sum.addAndGet(value);
+      long current;
+      while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+         // retry
+      }
+   }
+
+   public long getCount() {
+      return count.get();
+   }
+
+   public long getMax() {
+      return max.get();
+   }
+
+   public double getMean() {
+      long n = count.get();
+      return n == 0 ? 0 : (double) sum.get() / n;
+   }
+
+   /**
+    * Returns the value below which the given percent of recorded values fall.
+    *
+    * @param percentile percentile from 0 to 100
+    * @return value at the percentile, 0 if nothing is recorded
+    */
+   public long getValueAtPercentile(double percentile) {
+      long total = count.get();
+      if (total == 0) {
+         return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS_COUNT; i++) {
+         seen += counts.get(i);
+         if (seen >= rank) {
+            return Math.min(highestValueOf(i), max.get());
+         }
+      }
+      return max.get();
+   }
+
+   static int indexOf(long value) {
+      if (value < SUB_BUCKETS) {
+         return (int) value;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int shift = exponent - SUB_BITS;
+      return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+   }
+
+   static long highestValueOf(int index) {
+      if (index < SUB_BUCKETS) {
+         return index;
+      }
+      int shift = index / SUB_BUCKETS - 1;
+      long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+      return lowest + (1L << shift) - 1;
+   }
+
+   @Override
+   public String toString() {
+      return "count=" + getCount() + ", mean=" + (long) getMean() + ", p50=" + getValueAtPercentile(50) + ", p90=" + getValueAtPercentile(90)
+              + ", p99=" + getValueAtPercentile(99) + ", max=" + getMax();
+   }
+
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.metrics;
+
+import ua.at.tsvetkov.util.Log;
+
+/**
+ * Dispatcher of the request metrics to the registered listeners. The metrics of requests are not collected at all while there are no
+ * listeners, so the requests do not allocate anything for them.
+ *
+ * @author lordtao
+ */
+public class MetricsDispatcher {
+
+   private static final MetricsListener[] EMPTY = new MetricsListener[0];
+
+   private volatile MetricsListener[] listeners = EMPTY;
+
+   /**
+    * Register the listener of the request metrics.
+    *
+    * @param listener metrics listener
+    */
+   public synchronized void addListener(MetricsListener listener) {
+      MetricsListener[] current = listeners;
+      MetricsListener[] updated = new MetricsListener[current.length + 1];
+      System.arraycopy(current, 0, updated, 0, current.length);
+      updated[current.length] = listener;
+      listeners = updated;
+   }
+
+   /**
+    * Unregister the listener of the request metrics.
+    *
+    * @param listener metrics listener
+    */
+   public synchronized void removeListener(MetricsListener listener) {
+      MetricsListener[] current = listeners;
+      for (int i = 0; i < current.length; i++) {
+         if (current[i] == listener) {
+            MetricsListener[] updated = new MetricsListener[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, i);
+            System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+            listeners = updated;
+            return;
+         }
+      }
+   }
+
+   /**
+    * Returns whether the metrics must be collected.
+    *
+    * @return true if there is at least one listener
+    */
+   public boolean isEnabled() {
+      return listeners.length > 0;
+   }
+
+   /**
+    * Pass the metrics of the finished request to all listeners. The failure of one listener does not affect others.
+    *
+    * @param metrics request metrics
+    */
+   public void dispatch(RequestMetrics metrics) {
+      for (MetricsListener listener : listeners) {
+         try {
+            listener.onRequestFinished(metrics);
+         } catch (RuntimeException e) {
+            Log.e(e);
+         }
+      }
+   }
+
+}
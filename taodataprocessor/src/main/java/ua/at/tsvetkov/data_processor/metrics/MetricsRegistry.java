@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics listener which aggregates the request metrics per endpoint (the request log tag): latency histograms of every phase in
+ * microseconds, byte, retry and status code counters.
+ *
+ * @author lordtao
+ */
+public class MetricsRegistry implements MetricsListener {
+
+   /**
+    * Endpoint name of requests without the log tag.
+    */
+   public static final String DEFAULT_ENDPOINT = "default";
+
+   private static final long NANOS_PER_MICRO = 1000;
+
+   private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+   @Override
+   public void onRequestFinished(RequestMetrics metrics) {
+      getOrCreate(metrics.getTag() == null ? DEFAULT_ENDPOINT : metrics.getTag()).record(metrics);
+   }
+
+   /**
+    * Returns the metrics of the endpoint.
+    *
+    * @param tag request log tag or {@link #DEFAULT_ENDPOINT}
+    * @return endpoint metrics or null if there are no requests with this tag
+    */
+   public Endpoint getEndpoint(String tag) {
+      return endpoints.get(tag);
+   }
+
+   /**
+    * Returns the metrics of all endpoints by request tags.
+    *
+    * @return unmodifiable view of the endpoint metrics
+    */
+   public Map<String, Endpoint> getEndpoints() {
+      return Collections.unmodifiableMap(endpoints);
+   }
+
+   /**
+    * Remove all collected metrics.
+    */
+   public void clear() {
+      endpoints.clear();
+   }
+
+   private Endpoint getOrCreate(String tag) {
+      Endpoint endpoint = endpoints.get(tag);
+      if (endpoint == null) {
+         Endpoint created = new Endpoint();
+         endpoint = endpoints.putIfAbsent(tag, created);
+         if (endpoint == null) {
+            endpoint = created;
+         }
+      }
+      return endpoint;
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+         sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Aggregated metrics of one endpoint.
+    */
+   public static final class Endpoint {
+
+      private final Histogram                               totalTime        = new Histogram();
+      private final Histogram[]                             phaseTimes       = new Histogram[Phase.COUNT];
+      private final AtomicLong                              receivedBytes    = new AtomicLong();
+      private final AtomicLong                              transferredBytes = new AtomicLong();
+      private final AtomicLong                              retryCount       = new AtomicLong();
+      private final ConcurrentHashMap<Integer, AtomicLong> statusCounts     = new ConcurrentHashMap<>();
+
+      Endpoint() {
+         for (int i = 0; i < phaseTimes.length; i++) {
+            phaseTimes[i] = new Histogram();
+         }
+      }
+
+      void record(RequestMetrics metrics) {
+         totalTime.record(metrics.getTotalTime() / NANOS_PER_MICRO);
+         for (Phase phase : Phase.values()) {
+            long time = metrics.getTime(phase);
+            if (time > 0) {
+               phaseTimes[phase.ordinal()].record(time / NANOS_PER_MICRO);
+            }
+         }
+         receivedBytes.addAndGet(metrics.getReceivedBytes());
+         if (metrics.getTransferredBytes() > 0) {
+            transferredBytes.addAndGet(metrics.getTransferredBytes());
+         }
+         retryCount.addAndGet(metrics.getRetryCount());
+         AtomicLong counter = statusCounts.get(metrics.getStatusCode());
+         if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = statusCounts.putIfAbsent(metrics.getStatusCode(), created);
+            if (counter == null) {
+               counter = created;
+            }
+         }
+         counter.incrementAndGet();
+      }
+
+      /**
+       * Returns the histogram of the whole request time in microseconds.
+       *
+       * @return total time histogram
+       */
+      public Histogram getTotalTime() {
+         return totalTime;
+      }
+
+      /**
+       * Returns the histogram of the phase time in microseconds. The skipped phases are not recorded.
+       *
+       * @param phase request phase
+       * @return phase time histogram
+       */
+      public Histogram getTime(Phase phase) {
+         return phaseTimes[phase.ordinal()];
+      }
+
+      public long getReceivedBytes() {
+         return receivedBytes.get();
+      }
+
+      public long getTransferredBytes() {
+         return transferredBytes.get();
+      }
+
+      public long getRetryCount() {
+         return retryCount.get();
+      }
+
+      /**
+       * Returns the count of requests finished with the status.
+       *
+       * @param statusCode http status or one of {@link ua.at.tsvetkov.data_processor.helpers.ConnectionConstants} codes
+       * @return requests count
+       */
+      public long getStatusCount(int statusCode) {
+         AtomicLong counter = statusCounts.get(statusCode);
+         return counter == null ? 0 : counter.get();
+      }
+
+      /**
+       * Returns the request counts by status codes.
+       *
+       * @return unmodifiable view of the status counters
+       */
+      public Map<Integer, AtomicLong> getStatusCounts() {
+         return Collections.unmodifiableMap(statusCounts);
+      }
+
+      @Override
+      public String toString() {
+         StringBuilder sb = new StringBuilder("total [").append(totalTime).append(']');
+         for (Phase phase : Phase.values()) {
+            Histogram histogram = phaseTimes[phase.ordinal()];
+            if (histogram.getCount() > 0) {
+               sb.append(", ").append(phase).append(" [").append(histogram).append(']');
+            }
+         }
+         sb.append(", received=").append(receivedBytes).append(", transferred=").append(transferredBytes).append(", retries=")
+                 .append(retryCount).append(", statuses=").append(statusCounts);
+         return sb.toString();
+      }
+
+   }
+
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.metrics;
+
+/**
+ * Phases of the request execution measured by {@link RequestMetrics}.
+ *
+ * @author lordtao
+ */
+public enum Phase {
+    /**
+     * Waiting in the thread pool queue.
+     */
+    QUEUE_WAIT,
+    /**
+     * Connection to the host: DNS lookup, TCP and TLS handshakes.
+     */
+    CONNECT,
+    /**
+     * From the sent request to the response headers (time to first byte).
+     */
+    TTFB,
+    /**
+     * Reading of the response body before the parsing, if the body is buffered or saved to the file.
+     */
+    DOWNLOAD,
+    /**
+     * Writing of the response to the cache file or the http disk cache.
+     */
+    CACHE_WRITE,
+    /**
+     * Parsing of the response. Includes the reading of the body if it is parsed directly from the network.
+     */
+    PARSE,
+    /**
+     * From the ready result to the end of the callback, including the posting to the callback thread.
+     */
+    CALLBACK;
+
+    static final int COUNT = values().length;
+
+}
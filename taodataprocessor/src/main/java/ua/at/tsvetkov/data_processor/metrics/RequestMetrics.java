@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metrics of one request execution: phase timings in nanoseconds, status and byte counts. Created by the processor only if there are
+ * registered {@link MetricsListener listeners}.
+ *
+ * @author lordtao
+ */
+public final class RequestMetrics {
+
+   private static final int PARTS = 2;
+
+   private final String        tag;
+   private final long          startTime;
+   private final long[]        phaseTimes = new long[Phase.COUNT];
+   private final AtomicInteger remainingParts = new AtomicInteger(PARTS);
+   private long                totalTime;
+   private int                 statusCode;
+   private long                receivedBytes;
+   private long                transferredBytes = -1;
+   private int                 retryCount;
+
+   /**
+    * @param tag       log tag of the request, used as the endpoint name
+    * @param queueWait time of waiting in the thread pool queue in nanoseconds
+    */
+   public RequestMetrics(String tag, long queueWait) {
+      this.tag = tag;
+      this.startTime = System.nanoTime();
+      phaseTimes[Phase.QUEUE_WAIT.ordinal()] = queueWait;
+   }
+
+   /**
+    * Add the time to the phase.
+    *
+    * @param phase request phase
+    * @param time  time in nanoseconds, negative values are ignored
+    */
+   public void addTime(Phase phase, long time) {
+      if (time > 0) {
+         phaseTimes[phase.ordinal()] += time;
+      }
+   }
+
+   /**
+    * Mark one of the two parts of the request finished: the execution and the callback.
+    *
+    * @return true if both parts are finished and the metrics can be dispatched
+    */
+   public boolean finishPart() {
+      if (remainingParts.decrementAndGet() == 0) {
+         totalTime = phaseTimes[Phase.QUEUE_WAIT.ordinal()] + System.nanoTime() - startTime;
+         return true;
+      }
+      return false;
+   }
+
+   public void setResult(int statusCode, long receivedBytes, long transferredBytes, int retryCount) {
+      this.statusCode = statusCode;
+      this.receivedBytes = receivedBytes;
+      this.transferredBytes = transferredBytes;
+      this.retryCount = retryCount;
+   }
+
+   /**
+    * Returns the log tag of the request, or null.
+    *
+    * @return request tag
+    */
+   public String getTag() {
+      return tag;
+   }
+
+   /**
+    * Returns the time of the phase.
+    *
+    * @param phase request phase
+    * @return time in nanoseconds, 0 if the phase was skipped
+    */
+   public long getTime(Phase phase) {
+      return phaseTimes[phase.ordinal()];
+   }
+
+   /**
+    * Returns the whole time from the submission to the end of the callback.
+    *
+    * @return time in nanoseconds
+    */
+   public long getTotalTime() {
+      return totalTime;
+   }
+
+   public int getStatusCode() {
+      return statusCode;
+   }
+
+   /**
+    * Returns the count of bytes passed to the parser.
+    *
+    * @return received bytes count
+    */
+   public long getReceivedBytes() {
+      return receivedBytes;
+   }
+
+   /**
+    * Returns the count of bytes received from the network before the content decoding.
+    *
+    * @return transferred bytes count or -1 if unknown
+    */
+   public long getTransferredBytes() {
+      return transferredBytes;
+   }
+
+   public int getRetryCount() {
+      return retryCount;
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder sb = new StringBuilder("RequestMetrics [tag=").append(tag).append(", status=").append(statusCode);
+      sb.append(", total=").append(totalTime / 1000).append(" us");
+      for (Phase phase : Phase.values()) {
+         sb.append(", ").append(phase).append('=').append(phaseTimes[phase.ordinal()] / 1000);
+      }
+      sb.append(", received=").append(receivedBytes).append(", transferred=").append(transferredBytes).append(", retries=").append(retryCount);
+      return sb.append(']').toString();
+   }
+
+}
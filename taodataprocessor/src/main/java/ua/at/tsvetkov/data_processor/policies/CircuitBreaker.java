@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.policies;
+
+import java.util.concurrent.TimeUnit;
+
+import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+
+/**
+ * Circuit breaker of one host. Every request takes the permit by {@link #tryAcquire()} and reports its outcome with this permit by
+ * {@link #onSuccess(long)}, {@link #onFailure(long)} or {@link #onIgnored(long)} if it was cancelled. The permit is the generation of the
+ * circuit, it is changed on every opening, so the late outcome of the request permitted before the opening is not counted.
+ *
+ * @author lordtao
+ */
+public final class CircuitBreaker {
+
+   /**
+    * The permit is not granted, the circuit is open.
+    */
+   public static final long NO_PERMIT = -1;
+
+   public enum State {
+      CLOSED, OPEN, HALF_OPEN
+   }
+
+   private final CircuitBreakerPolicy policy;
+   private final boolean[]            window;
+   private int   position;
+   private int   calls;
+   private int   failures;
+   private State state = State.CLOSED;
+   private long  openTime;
+   private int   probes;
+   private int   succeededProbes;
+   private long  rejectedCount;
+   private long  openCount;
+   private long  generation;
+
+   public CircuitBreaker(CircuitBreakerPolicy policy) {
+      this.policy = policy;
+      this.window = new boolean[policy.getWindowSize()];
+   }
+
+   /**
+    * Returns whether the response status is the failure of the host.
+    *
+    * @param statusCode response status
+    * @return true for 502, 503 and 504
+    */
+   public static boolean isFailure(int statusCode) {
+      return statusCode == ConnectionConstants.HTTP_BAD_GATEWAY || statusCode == ConnectionConstants.HTTP_UNAVAILABLE
+              || statusCode == ConnectionConstants.HTTP_GATEWAY_TIMEOUT;
+   }
+
+   /**
+    * Take the permit to send the request.
+    *
+    * @return the permit, or {@link #NO_PERMIT} if the circuit is open or all probes of the half open circuit are sent
+    */
+   public synchronized long tryAcquire() {
+      if (state == State.CLOSED) {
+         return generation;
+      }
+      if (state == State.OPEN) {
+         if (System.nanoTime() - openTime < TimeUnit.MILLISECONDS.toNanos(policy.getOpenDuration())) {
+            rejectedCount++;
+            return NO_PERMIT;
+         }
+         state = State.HALF_OPEN;
+         probes = 0;
+         succeededProbes = 0;
+      }
+      if (probes >= policy.getProbeCount()) {
+         rejectedCount++;
+         return NO_PERMIT;
+      }
+      probes++;
+      return generation;
+   }
+
+   /**
+    * The permitted request is succeeded.
+    *
+    * @param permit the permit of the request
+    */
+   public synchronized void onSuccess(long permit) {
+      if (permit != generation) {
+         return;
+      }
+      if (state == State.HALF_OPEN) {
+         if (++succeededProbes >= policy.getProbeCount()) {
+            close();
+         }
+      } else if (state == State.CLOSED) {
+         record(false);
+      }
+   }
+
+   /**
+    * The permitted request is failed.
+    *
+    * @param permit the permit of the request
+    */
+   public synchronized void onFailure(long permit) {
+      if (permit != generation) {
+         return;
+      }
+      if (state == State.HALF_OPEN) {
+         open();
+      } else if (state == State.CLOSED) {
+         record(true);
+         if (calls >= policy.getMinimumCalls() && failures * 100 >= policy.getFailureRateThreshold() * calls) {
+            open();
+         }
+      }
+   }
+
+   /**
+    * The permitted request is cancelled, its outcome is unknown.
+    *
+    * @param permit the permit of the request
+    */
+   public synchronized void onIgnored(long permit) {
+      if (permit == generation && state == State.HALF_OPEN && probes > succeededProbes) {
+         probes--;
+      }
+   }
+
+   private void record(boolean isFailure) {
+      if (calls == window.length) {
+         if (window[position]) {
+            failures--;
+         }
+      } else {
+         calls++;
+      }
+      window[position] = isFailure;
+      if (isFailure) {
+         failures++;
+      }
+      position = (position + 1) % window.length;
+   }
+
+   private void open() {
+      state = State.OPEN;
+      openTime = System.nanoTime();
+      openCount++;
+      generation++;
+   }
+
+   private void close() {
+      state = State.CLOSED;
+      position = 0;
+      calls = 0;
+      failures = 0;
+   }
+
+   public synchronized State getState() {
+      return state;
+   }
+
+   /**
+    * Returns the count of requests failed immediately because of the open circuit.
+    *
+    * @return rejected requests count
+    */
+   public synchronized long getRejectedCount() {
+      return rejectedCount;
+   }
+
+   /**
+    * Returns how many times the circuit was opened.
+    *
+    * @return open count
+    */
+   public synchronized long getOpenCount() {
+      return openCount;
+   }
+
+   @Override
+   public synchronized String toString() {
+      return "CircuitBreaker [state=" + state + ", calls=" + calls + ", failures=" + failures + ", rejected=" + rejectedCount + ", opened="
+              + openCount + "]";
+   }
+
+}
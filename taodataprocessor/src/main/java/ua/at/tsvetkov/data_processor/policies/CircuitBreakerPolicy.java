@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.policies;
+
+/**
+ * Parameters of the per host circuit breakers. The circuit of the host opens when the failure rate of the last requests reaches the
+ * threshold. While it is open the requests to the host fail immediately without connection. After the open duration the limited count of
+ * probe requests is sent, the circuit closes if all of them succeed and opens again otherwise.
+ *
+ * @author lordtao
+ */
+public final class CircuitBreakerPolicy {
+
+   /**
+    * Opens the circuit when 50% of the last 20 requests (at least 10) failed, for 15 s, then closes it after 2 successful probes.
+    */
+   public static final CircuitBreakerPolicy DEFAULT  = new CircuitBreakerPolicy(20, 10, 50, 15000, 2);
+   /**
+    * The circuit is never opened.
+    */
+   public static final CircuitBreakerPolicy DISABLED = new CircuitBreakerPolicy(0, 0, 100, 0, 0);
+
+   private final int  windowSize;
+   private final int  minimumCalls;
+   private final int  failureRateThreshold;
+   private final long openDuration;
+   private final int  probeCount;
+
+   /**
+    * @param windowSize           count of the last requests to calculate the failure rate
+    * @param minimumCalls         min count of requests in the window to calculate the failure rate
+    * @param failureRateThreshold failure rate in percents which opens the circuit
+    * @param openDuration         time in milliseconds while the circuit is open
+    * @param probeCount           count of the probe requests when the open duration is passed
+    */
+   public CircuitBreakerPolicy(int windowSize, int minimumCalls, int failureRateThreshold, long openDuration, int probeCount) {
+      this.windowSize = windowSize;
+      this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+      this.failureRateThreshold = failureRateThreshold;
+      this.openDuration = openDuration;
+      this.probeCount = Math.max(1, probeCount);
+   }
+
+   public boolean isEnabled() {
+      return windowSize > 0;
+   }
+
+   public int getWindowSize() {
+      return windowSize;
+   }
+
+   public int getMinimumCalls() {
+      return minimumCalls;
+   }
+
+   public int getFailureRateThreshold() {
+      return failureRateThreshold;
+   }
+
+   public long getOpenDuration() {
+      return openDuration;
+   }
+
+   public int getProbeCount() {
+      return probeCount;
+   }
+
+   @Override
+   public String toString() {
+      return "CircuitBreakerPolicy [windowSize=" + windowSize + ", minimumCalls=" + minimumCalls + ", failureRateThreshold="
+              + failureRateThreshold + ", openDuration=" + openDuration + ", probeCount=" + probeCount + "]";
+   }
+
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.policies;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the circuit breakers of hosts.
+ *
+ * @author lordtao
+ */
+public class CircuitBreakers {
+
+   private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+   /**
+    * Returns the circuit breaker of the host, creates it with the policy if there is none.
+    *
+    * @param host   host with the port
+    * @param policy policy of the new circuit breaker
+    * @return circuit breaker
+    */
+   public CircuitBreaker get(String host, CircuitBreakerPolicy policy) {
+      CircuitBreaker breaker = breakers.get(host);
+      if (breaker == null) {
+         CircuitBreaker created = new CircuitBreaker(policy);
+         breaker = breakers.putIfAbsent(host, created);
+         if (breaker == null) {
+            breaker = created;
+         }
+      }
+      return breaker;
+   }
+
+   /**
+    * Returns the circuit breakers by hosts.
+    *
+    * @return unmodifiable view of circuit breakers
+    */
+   public Map<String, CircuitBreaker> getAll() {
+      return Collections.unmodifiableMap(breakers);
+   }
+
+   /**
+    * Forget the state of all hosts.
+    */
+   public void clear() {
+      breakers.clear();
+   }
+
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.policies;
+
+/**
+ * Action of the thread pool when a request is submitted to the full queue. The rejected request is finished with the
+ * {@link ua.at.tsvetkov.data_processor.helpers.ConnectionConstants#REQUEST_REJECTED REQUEST_REJECTED} status.
+ *
+ * @author lordtao
+ */
+public enum RejectionPolicy {
+    /**
+     * Drop the oldest queued {@link ua.at.tsvetkov.data_processor.helpers.Priority#PREFETCH PREFETCH} request to free the place. The
+     * submitted request is rejected if there is no queued prefetch request.
+     */
+    DROP_OLDEST_PREFETCH,
+    /**
+     * Execute the submitted request in the calling thread. Must not be used if the requests are submitted from the UI thread.
+     */
+    CALLER_RUNS,
+    /**
+     * Reject the submitted request.
+     */
+    FAIL_FAST
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.policies;
+
+import java.util.Random;
+
+import ua.at.tsvetkov.util.Log;
+
+/**
+ * Policy of response body logging. Limits the size of the logged body, logs only a sample of responses and formats the body lazily, only
+ * if it will be logged.
+ *
+ * @author lordtao
+ */
+public final class ResponseLogPolicy {
+
+   public static final int DEFAULT_MAX_LENGTH = 4 * 1024;
+
+   /**
+    * Logs each response body up to {@link #DEFAULT_MAX_LENGTH} chars.
+    */
+   public static final ResponseLogPolicy DEFAULT = new ResponseLogPolicy(true, DEFAULT_MAX_LENGTH, 1f);
+   /**
+    * Disabled logging of response bodies.
+    */
+   public static final ResponseLogPolicy DISABLED = new ResponseLogPolicy(false, 0, 0);
+
+   private static final String TRUNCATED = "\n... truncated, total length = ";
+
+   private final boolean isEnabled;
+   private final int     maxLength;
+   private final float   sampleRate;
+   private final Random  random = new Random();
+
+   /**
+    * @param isEnabled  is the bodies logging enabled
+    * @param maxLength  max logged length of the body. A longer body is logged unformatted and truncated.
+    * @param sampleRate part of responses to log, from 0 to 1
+    */
+   public ResponseLogPolicy(boolean isEnabled, int maxLength, float sampleRate) {
+      this.isEnabled = isEnabled;
+      this.maxLength = maxLength;
+      this.sampleRate = sampleRate;
+   }
+
+   public boolean isEnabled() {
+      return isEnabled;
+   }
+
+   public int getMaxLength() {
+      return maxLength;
+   }
+
+   public float getSampleRate() {
+      return sampleRate;
+   }
+
+   /**
+    * Decides whether the next response body should be logged. Check it before building of any log strings.
+    *
+    * @return true if the body should be logged
+    */
+   public boolean isLoggable() {
+      if (!isEnabled) {
+         return false;
+      }
+      return sampleRate >= 1f || random.nextFloat() < sampleRate;
+   }
+
+   /**
+    * Log the response body. The formatter is called only if the body is not longer than the max length, a longer body is logged
+    * unformatted and truncated.
+    *
+    * @param header    text before the body
+    * @param body      raw response body
+    * @param formatter formatter of the body, can be null
+    * @param footer    text after the body
+    */
+   public void log(String header, String body, Formatter formatter, String footer) {
+      String text;
+      if (body.length() > maxLength) {
+         text = body.substring(0, maxLength) + TRUNCATED + body.length();
+      } else if (formatter != null) {
+         try {
+            text = formatter.format(body);
+         } catch (Exception e) {
+            text = body;
+         }
+      } else {
+         text = body;
+      }
+      Log.v(header + text + footer);
+   }
+
+   /**
+    * Lazy formatter of the logged body.
+    */
+   public interface Formatter {
+
+      /**
+       * Format the body for the log.
+       *
+       * @param body raw response body
+       * @return formatted body
+       * @throws Exception
+       */
+      String format(String body) throws Exception;
+
+   }
+
+}
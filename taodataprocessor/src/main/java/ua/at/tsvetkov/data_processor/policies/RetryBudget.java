@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.policies;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide token bucket which limits the share of retries, so the retries do not multiply the load of the failing server. Every
+ * request deposits the part of the token, every retry withdraws one token. The retry is refused when the bucket is empty.
+ *
+ * @author lordtao
+ */
+public final class RetryBudget {
+
+   /**
+    * Retries up to 20% of requests with the reserve of 10 retries.
+    */
+   public static final float DEFAULT_RATIO      = 0.2f;
+   public static final int   DEFAULT_MAX_TOKENS = 10;
+
+   private static final int TOKEN = 1000;
+
+   private final int           deposit;
+   private final int           maxBalance;
+   private final AtomicInteger balance;
+   private final AtomicLong    retryCount   = new AtomicLong();
+   private final AtomicLong    refusedCount = new AtomicLong();
+
+   public RetryBudget() {
+      this(DEFAULT_RATIO, DEFAULT_MAX_TOKENS);
+   }
+
+   /**
+    * @param ratio     part of the token deposited by every request, e.g. 0.2 allows to retry 20% of requests
+    * @param maxTokens max count of the stored tokens, the bucket is full on start
+    */
+   public RetryBudget(float ratio, int maxTokens) {
+      deposit = (int) (ratio * TOKEN);
+      maxBalance = maxTokens * TOKEN;
+      balance = new AtomicInteger(maxBalance);
+   }
+
+   /**
+    * Deposit the part of the token for the new request.
+    */
+   public void onRequest() {
+      int current;
+      int next;
+      do {
+         current = balance.get();
+         next = Math.min(maxBalance, current + deposit);
+      } while (current != next && !balance.compareAndSet(current, next));
+   }
+
+   /**
+    * Withdraw the token for the retry.
+    *
+    * @return true if the retry is allowed
+    */
+   public boolean tryAcquire() {
+      int current;
+      do {
+         current = balance.get();
+         if (current < TOKEN) {
+            refusedCount.incrementAndGet();
+            return false;
+         }
+      } while (!balance.compareAndSet(current, current - TOKEN));
+      retryCount.incrementAndGet();
+      return true;
+   }
+
+   /**
+    * Returns the count of the retries allowed by the budget.
+    *
+    * @return retries count
+    */
+   public long getRetryCount() {
+      return retryCount.get();
+   }
+
+   /**
+    * Returns the count of the retries refused because of the empty budget.
+    *
+    * @return refused retries count
+    */
+   public long getRefusedCount() {
+      return refusedCount.get();
+   }
+
+   /**
+    * Returns the count of the retries available now.
+    *
+    * @return available retries
+    */
+   public float getAvailableTokens() {
+      return (float) balance.get() / TOKEN;
+   }
+
+   @Override
+   public String toString() {
+      return "RetryBudget [available=" + getAvailableTokens() + ", retries=" + retryCount.get() + ", refused=" + refusedCount.get() + "]";
+   }
+
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.policies;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+
+/**
+ * Policy of web request retries. The request is retried on connection failures, socket timeouts and 502 / 503 / 504 responses with the
+ * exponential backoff and full jitter: the delay before the retry N is random from 0 to min(maxDelay, initialDelay * 2^N). Retries are
+ * also limited by the process wide {@link RetryBudget}.
+ *
+ * @author lordtao
+ */
+public final class RetryPolicy {
+
+   /**
+    * Up to 2 retries, the delay up to 500 ms before the first retry and up to 1 s before the second.
+    */
+   public static final RetryPolicy DEFAULT  = new RetryPolicy(2, 500, 5000);
+   /**
+    * No retries.
+    */
+   public static final RetryPolicy DISABLED = new RetryPolicy(0, 0, 0);
+
+   private static final int MAX_SHIFT = 30;
+
+   private final int    maxRetries;
+   private final long   initialDelay;
+   private final long   maxDelay;
+   private final Random random = new Random();
+
+   /**
+    * @param maxRetries   max count of retries of one request
+    * @param initialDelay max delay before the first retry in milliseconds
+    * @param maxDelay     max delay before any retry in milliseconds
+    */
+   public RetryPolicy(int maxRetries, long initialDelay, long maxDelay) {
+      this.maxRetries = maxRetries;
+      this.initialDelay = initialDelay;
+      this.maxDelay = maxDelay;
+   }
+
+   public int getMaxRetries() {
+      return maxRetries;
+   }
+
+   public long getInitialDelay() {
+      return initialDelay;
+   }
+
+   public long getMaxDelay() {
+      return maxDelay;
+   }
+
+   /**
+    * Returns whether the request failed with the exception can be retried.
+    *
+    * @param e request exception
+    * @return true for connection failures and socket timeouts
+    */
+   public boolean isRetryable(IOException e) {
+      return e instanceof ConnectException || e instanceof NoRouteToHostException || e instanceof SocketTimeoutException;
+   }
+
+   /**
+    * Returns whether the request finished with the status can be retried.
+    *
+    * @param statusCode response status
+    * @return true for 502, 503, 504 and no connection
+    */
+   public boolean isRetryable(int statusCode) {
+      return statusCode == ConnectionConstants.HTTP_BAD_GATEWAY || statusCode == ConnectionConstants.HTTP_UNAVAILABLE
+              || statusCode == ConnectionConstants.HTTP_GATEWAY_TIMEOUT || statusCode == ConnectionConstants.NO_INTERNET_CONNECTION;
+   }
+
+   /**
+    * Returns the random delay before the retry.
+    *
+    * @param retry number of the retry from 0
+    * @return delay in milliseconds
+    */
+   public long getDelay(int retry) {
+      long limit = Math.min(maxDelay, initialDelay << Math.min(retry, MAX_SHIFT));
+      if (limit <= 0) {
+         return 0;
+      }
+      synchronized (random) {
+         return (long) (random.nextDouble() * limit);
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "RetryPolicy [maxRetries=" + maxRetries + ", initialDelay=" + initialDelay + ", maxDelay=" + maxDelay + "]";
+   }
+
+}
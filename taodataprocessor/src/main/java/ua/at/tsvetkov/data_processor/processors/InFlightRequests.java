@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of the requests which are executing right now. Equal requests (same {@link ua.at.tsvetkov.data_processor.requests.Request#getIdentity()
+ * identity}, result class, encoding and cache file) are coalesced: the first one does the network fetch and the parse, all others receive its result.
+ *
+ * @author lordtao
+ */
+public class InFlightRequests {
+
+   private final ConcurrentHashMap<String, Processor<?>> leaders        = new ConcurrentHashMap<>();
+   private final AtomicLong                             coalescedCount = new AtomicLong();
+
+   /**
+    * Joins the processor to the running processor with the same key.
+    *
+    * @param key       request identity with the result class, encoding and cache file
+    * @param processor processor to join
+    * @param canLead   register the processor as running if there is no other one with the same key
+    * @return true if the processor will receive the result of the running one, false if it must execute the request itself
+    */
+   @SuppressWarnings("unchecked")
+   <T> boolean join(String key, Processor<T> processor, boolean canLead) {
+      while (true) {
+         Processor<T> leader;
+         if (canLead) {
+            leader = (Processor<T>) leaders.putIfAbsent(key, processor);
+         } else {
+            leader = (Processor<T>) leaders.get(key);
+         }
+         if (leader == null) {
+            return false;
+         }
+         if (leader.addFollower(processor)) {
+            coalescedCount.incrementAndGet();
+            return true;
+         }
+         // The leader has just finished, try again.
+         leaders.remove(key, leader);
+      }
+   }
+
+   /**
+    * Unregister the finished processor.
+    *
+    * @param key       request identity with the result class, encoding and cache file
+    * @param processor finished processor
+    */
+   void remove(String key, Processor<?> processor) {
+      leaders.remove(key, processor);
+   }
+
+   /**
+    * Returns the count of requests which was served by another running request instead of own execution.
+    *
+    * @return coalesced requests count
+    */
+   public long getCoalescedCount() {
+      return coalescedCount.get();
+   }
+
+   /**
+    * Returns the count of requests which are executing right now and can be joined.
+    *
+    * @return running requests count
+    */
+   public int size() {
+      return leaders.size();
+   }
+
+}
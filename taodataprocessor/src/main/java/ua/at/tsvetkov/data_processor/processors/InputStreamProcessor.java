@@ -24,7 +24,9 @@
 package ua.at.tsvetkov.data_processor.processors;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
+import ua.at.tsvetkov.data_processor.interfaces.ByteBufferDataInterface;
 import ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface;
 import ua.at.tsvetkov.data_processor.processors.abstractclasses.AbstractProcessor;
 
@@ -41,6 +43,16 @@ public class InputStreamProcessor<T> extends AbstractProcessor<T> {
         object.fillFromInputStream(inputStream);
     }
 
+    @Override
+    public void parse(ByteBuffer buffer) throws Exception {
+        ((ByteBufferDataInterface) object).fillFromByteBuffer(buffer);
+    }
+
+    @Override
+    public boolean isByteBufferSupported() {
+        return object instanceof ByteBufferDataInterface;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public T getResult() {
@@ -32,18 +32,44 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Constructor;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.net.SocketTimeoutException;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.cache.PartialFile;
 import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
 import ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface;
 import ua.at.tsvetkov.data_processor.interfaces.StringDataInterface;
+import ua.at.tsvetkov.data_processor.io.BufferPool;
+import ua.at.tsvetkov.data_processor.io.BufferedBody;
+import ua.at.tsvetkov.data_processor.io.CancelableInputStream;
+import ua.at.tsvetkov.data_processor.io.ContentDecoder;
+import ua.at.tsvetkov.data_processor.io.CountingInputStream;
+import ua.at.tsvetkov.data_processor.io.MappedInputStream;
+import ua.at.tsvetkov.data_processor.io.TeeInputStream;
+import ua.at.tsvetkov.data_processor.metrics.EventListener;
+import ua.at.tsvetkov.data_processor.metrics.Phase;
+import ua.at.tsvetkov.data_processor.metrics.RequestMetrics;
+import ua.at.tsvetkov.data_processor.policies.RetryBudget;
+import ua.at.tsvetkov.data_processor.policies.RetryPolicy;
 import ua.at.tsvetkov.data_processor.processors.abstractclasses.AbstractProcessor;
 import ua.at.tsvetkov.data_processor.requests.Request;
 import ua.at.tsvetkov.data_processor.threads.DataProcessingThreadFactory;
 import ua.at.tsvetkov.data_processor.threads.DataProcessorThreadPool;
+import ua.at.tsvetkov.data_processor.threads.ParserThreadPool;
+import ua.at.tsvetkov.data_processor.threads.PriorityTask;
 import ua.at.tsvetkov.util.Log;
 
 @SuppressWarnings("deprecation")
@@ -57,16 +83,32 @@ public class Processor<T> {
 
    private static final String FILE_EXIST = "File exist: ";
    private static final String CAN_T_CREATE = "Can't create ";
+   private static final String RESUME = "Resume ";
+   private static final String RESUME_FAILED = "Can't resume ";
+   private static final int TRANSFER_WINDOW = 1024 * 1024;
    private static final String LOADING_TIME = "Loading time = ";
    private static final String END_STRING = " ]";
    private static final String MS = " ms. [ ";
+   private static final String REQUEST_FAILED = "Request failed";
+   private static final String REQUEST_REJECTED = "Request rejected, the queue is full";
+   private static final String REQUEST_CANCELLED = "Request cancelled";
+   private static final String DEADLINE_EXCEEDED = "Request deadline exceeded";
+   private static final String RETRY = "Retry ";
 
-   private static final String INVALID_CLASS_PARAMETER = "Invalid class parameter. A class for data processing must implement InputStreamDataInterface or StringDataInterface either extend AbstractProcessor";
+   static final String INVALID_CLASS_PARAMETER = "Invalid class parameter. A class for data processing must implement InputStreamDataInterface or StringDataInterface either extend AbstractProcessor, or be java.io.File for the request with the cache file";
    private static final String INVALID_PARAMETER = "Invalid parameter. Request or Class can't be eq null";
 
    private Request request;
    private AbstractProcessor<T> processor;
    private InputStream inputStream;
+   private CountingInputStream countingStream;
+   private MappedInputStream mappedStream;
+   private TeeInputStream cacheFileStream;
+   private File downloadedFile;
+   private long downloadTime;
+   private long resumedOffset;
+   private boolean isResumeProgress;
+   private boolean isMappedBufferParsed;
    private String cacheFileName;
    private Class<T> clazz;
    private Callback<T> callback;
@@ -76,6 +118,26 @@ public class Processor<T> {
    private T result;
    private boolean isFinished = false;
    private int statusCode;
+   private volatile String flightKey;
+   private List<Processor<T>> followers;
+   private boolean isFlightFinished = false;
+   private CountDownLatch joinLatch;
+   private boolean isAsync = false;
+   private boolean isBodyBuffered = false;
+   private long bufferedLength;
+   private volatile boolean isParsingHandedOff = false;
+   private final AtomicBoolean isCancelled = new AtomicBoolean();
+   private final AtomicBoolean isAborted = new AtomicBoolean();
+   private final AtomicBoolean isResultSent = new AtomicBoolean();
+   private volatile int cancelStatus;
+   private volatile String cancelMessage;
+   private volatile PriorityTask task;
+   private Thread runningThread;
+   private volatile ScheduledFuture<?> deadlineFuture;
+   private int retryCount;
+   private long queueWaitTime;
+   private RequestMetrics metrics;
+   private boolean isCallbackReported;
 
    /**
     * @param dataProcessor
@@ -123,119 +185,564 @@ public class Processor<T> {
    }
 
    public T execute() {
+      EventListener listener = request.getEventListener();
+      if (listener != null) {
+         listener.callStart(request);
+      }
       request.showProgressDialog();
       if (!isCorrectClass()) {
          throw new InvalidParameterException(INVALID_CLASS_PARAMETER);
       }
+      if (!isAsync) {
+         startDeadline();
+      }
+      joinLatch = new CountDownLatch(1);
+      if (joinInFlight(true)) {
+         try {
+            joinLatch.await();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         request.dismissProgressDialog();
+         return result;
+      }
+      try {
+         return executeRequest();
+      } finally {
+         if (!isParsingHandedOff) {
+            completeFlight(ERROR, null, REQUEST_FAILED);
+         }
+      }
+   }
+
+   private T executeRequest() {
+      startMetrics();
       cacheFileName = request.getCacheFileName();
+      boolean isParsingStarted = false;
       try {
-         if (cacheFileName != null && cacheFileName.length() > 0) {
-            saveToFile();
-         } else {
-            inputStream = request.getInputStream();
+         if (openStream()) {
+            if (isBodyBuffered && handOffParsing()) {
+               return null;
+            }
+            isParsingStarted = true;
+            parse();
+            if (isAborted.get()) {
+               sendFailure();
+            } else {
+               sendMessage(getResultStatus(), processor.getResult(), request.getStatusMessage());
+            }
+         }
+      } finally {
+         if (!isParsingHandedOff) {
+            finish();
          }
-         if (request.getStatusCode() == ConnectionConstants.FILE_SUCCESS || inputStream != null) {
+      }
+      if (isParsingStarted) {
+         return processor.getResult();
+      } else {
+         return null;
+      }
+   }
+
+   /**
+    * I/O stage: open the response stream or the saved file and create the result object. The response of an asynchronous request is
+    * read ahead into pooled buffers up to the configured limit, so the connection can be released before the parsing.
+    *
+    * @return true if the response is ready for parsing, false if the request is failed and the result is already sent
+    */
+   private boolean openStream() {
+      try {
+         openResponse();
+         if (inputStream instanceof MappedInputStream) {
+            mappedStream = ((MappedInputStream) inputStream).newStream();
+            inputStream = mappedStream;
+         }
+         if (inputStream != null) {
+            countingStream = new CountingInputStream(inputStream);
+            inputStream = new CancelableInputStream(countingStream, isAborted);
+         }
+         if (downloadedFile != null) {
+            processor = newFileProcessor(downloadedFile);
+         } else if (clazz == File.class) {
+            Log.e("Request " + request.toString() + " status:" + request.getStatusCode());
+         } else if (request.getStatusCode() == ConnectionConstants.FILE_SUCCESS || inputStream != null) {
             createProcessor();
          } else {
             Log.e("Request " + request.toString() + " status:" + request.getStatusCode());
          }
-         if (processor != null) {
-            try {
-               processor.parse(inputStream);
-            } catch (Exception e) {
-               Log.e("Parsing Error for " + clazz + " in request " + request.toString(), e);
+         if (processor == null) {
+            sendFailure();
+            return false;
+         }
+         if (isAsync && mappedStream != null && dataProcessor.getParserThreadPool() != null) {
+            bufferedLength = mappedStream.length();
+            isBodyBuffered = true;
+         } else if (isAsync && inputStream != null && dataProcessor.getParserThreadPool() != null) {
+            long start = System.nanoTime();
+            BufferedBody body = BufferedBody.read(inputStream, dataProcessor.getConfiguration().getParserBufferLimit());
+            addTime(Phase.DOWNLOAD, System.nanoTime() - start);
+            if (body.isComplete()) {
+               EventListener listener = request.getEventListener();
+               if (listener != null && cacheFileStream == null) {
+                  listener.responseBodyEnd(request, body.size());
+               }
+               inputStream.close();
+               inputStream = new CancelableInputStream(body.openStream(null), isAborted);
+               bufferedLength = body.size();
+               isBodyBuffered = true;
+            } else {
+               inputStream = body.openStream(inputStream);
             }
-            sendMessage(request.getStatusCode(), processor.getResult(), request.getStatusMessage());
-         } else {
-            sendMessage(request.getStatusCode(), null, request.getStatusMessage());
-            // sendMessage(request.getStatusCode(), inputStream); WTF???
          }
+         return true;
       } catch (SocketTimeoutException e) {
          Log.e("Timeout during creation " + clazz.getSimpleName() + " in request " + request.toString(), e);
-         sendMessage(request.getStatusCode(), null, request.getStatusMessage());
+         sendFailure();
       } catch (FileNotFoundException e) {
          Log.e("Path is not found during creation " + clazz.getSimpleName() + " in request " + request.toString(), e);
-         sendMessage(request.getStatusCode(), null, request.getStatusMessage());
+         sendFailure();
       } catch (IOException e) {
+         if (isAborted.get()) {
+            sendFailure();
+            return false;
+         }
          Log.e("IOException during creation " + clazz.getSimpleName() + " in request " + request.toString(), e);
-         sendMessage(request.getStatusCode(), null, request.getStatusMessage());
-      } finally {
+         sendFailure();
+      }
+      return false;
+   }
+
+   /**
+    * Open the response stream or the saved file. The failed attempt is repeated according to the retry policy of the request while the
+    * process wide retry budget allows it.
+    *
+    * @throws IOException if the last attempt is failed
+    */
+   private void openResponse() throws IOException {
+      RetryPolicy policy = request.getRetryPolicy();
+      RetryBudget budget = DataProcessor.getInstance().getConfiguration().getRetryBudget();
+      budget.onRequest();
+      while (true) {
+         IOException failure = null;
          try {
-            if (inputStream != null) {
-               inputStream.close();
+            if (cacheFileName != null && cacheFileName.length() > 0 && clazz == File.class) {
+               downloadToFile();
+            } else if (cacheFileName != null && cacheFileName.length() > 0) {
+               saveToFile();
+            } else {
+               inputStream = request.getInputStream();
             }
-            request.close();
-         } catch (Exception e) {
-            Log.e(e);
+         } catch (IOException e) {
+            failure = e;
+         }
+         addTime(Phase.CONNECT, request.getConnectTime());
+         addTime(Phase.TTFB, request.getResponseWaitTime());
+         if (!isRetryNeeded(policy, failure) || !budget.tryAcquire()) {
+            if (failure != null) {
+               throw failure;
+            }
+            return;
+         }
+         long delay = policy.getDelay(retryCount);
+         retryCount++;
+         if (DataProcessor.getInstance().getConfiguration().isLogEnabled()) {
+            String cause = failure != null ? failure.toString() : "status:" + request.getStatusCode();
+            Log.w(RETRY + retryCount + " in " + delay + " ms, " + cause + " [ " + request + END_STRING);
+         }
+         closeAttempt();
+         if (!backOff(delay)) {
+            throw new InterruptedIOException(REQUEST_CANCELLED);
          }
       }
-      if (DataProcessor.getInstance().getConfiguration().isLogEnabled() && DataProcessor.getInstance().getConfiguration().isShowProcessingTime()) {
-         long time = System.currentTimeMillis() - request.getStartTime();
-         Log.v(LOADING_TIME + time + MS + request + END_STRING + " status:" + request.getStatusCode());
+   }
+
+   private boolean isRetryNeeded(RetryPolicy policy, IOException failure) {
+      if (isAborted.get() || retryCount >= policy.getMaxRetries() || !request.isRetryAllowed()) {
+         return false;
       }
-      request.dismissProgressDialog();
-      if (processor != null) {
-         return processor.getResult();
-      } else {
-         return null;
+      if (failure != null) {
+         return policy.isRetryable(failure) || isResumeProgress;
+      }
+      return inputStream != null && policy.isRetryable(request.getStatusCode());
+   }
+
+   private void closeAttempt() {
+      try {
+         if (inputStream != null) {
+            inputStream.close();
+            inputStream = null;
+         }
+         cacheFileStream = null;
+         request.close();
+      } catch (Exception e) {
+         Log.e(e);
       }
    }
 
    /**
+    * Wait before the retry, the waiting is stopped by the cancellation.
     *
+    * @param delay delay in milliseconds
+    * @return false if the request is cancelled
     */
-   @SuppressWarnings({"rawtypes", "unchecked"})
-   private void createProcessor() {
+   private boolean backOff(long delay) {
+      long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+      synchronized (isAborted) {
+         try {
+            long remaining;
+            while (!isAborted.get() && (remaining = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime())) > 0) {
+               isAborted.wait(remaining);
+            }
+         } catch (InterruptedException e) {
+            return false;
+         }
+      }
+      return !isAborted.get();
+   }
+
+   /**
+    * Release the connection of the completely buffered response and pass the parsing to the parser thread pool.
+    *
+    * @return true if the parsing is handed off
+    */
+   private boolean handOffParsing() {
+      ParserThreadPool parserPool = dataProcessor.getParserThreadPool();
+      if (parserPool == null) {
+         return false;
+      }
+      final int status = getResultStatus();
+      final String message = request.getStatusMessage();
+      try {
+         request.close();
+      } catch (Exception e) {
+         Log.e(e);
+      }
+      isParsingHandedOff = true;
+      parserPool.execute(new Runnable() {
+
+         @Override
+         public void run() {
+            try {
+               parse();
+               sendMessage(status, processor.getResult(), message);
+            } finally {
+               completeFlight(ERROR, null, REQUEST_FAILED);
+               finish();
+            }
+         }
+
+      });
+      return true;
+   }
+
+   /**
+    * CPU stage: parse the response into the result object.
+    */
+   private void parse() {
+      if (isAborted.get() || downloadedFile != null) {
+         return;
+      }
+      EventListener listener = request.getEventListener();
+      if (listener != null) {
+         listener.parseStart(request);
+      }
       try {
-         if (AbstractProcessor.class.isAssignableFrom(clazz)) {
-            Constructor[] construct = clazz.getDeclaredConstructors();
-            processor = (AbstractProcessor) construct[0].newInstance();
-         } else if (InputStreamDataInterface.class.isAssignableFrom(clazz)) {
-            Constructor[] construct = clazz.getDeclaredConstructors();
-            processor = new InputStreamProcessor((InputStreamDataInterface) construct[0].newInstance());
-         } else if (StringDataInterface.class.isAssignableFrom(clazz)) {
-            Constructor[] construct = clazz.getDeclaredConstructors();
-            processor = new StringProcessor((StringDataInterface) construct[0].newInstance());
+         processor.setContentLength(getContentLength());
+         processor.setEncoding(request.getEncoding());
+         long start = System.nanoTime();
+         if (mappedStream != null && processor.isByteBufferSupported()) {
+            isMappedBufferParsed = true;
+            processor.parse(mappedStream.getBuffer());
          } else {
-            Log.e(INVALID_CLASS_PARAMETER);
+            processor.parse(inputStream);
          }
+         completeCacheFile();
+         request.completeResponse();
+         addTime(Phase.PARSE, System.nanoTime() - start);
       } catch (Exception e) {
-         Log.e(CAN_T_CREATE + clazz.getCanonicalName(), e);
+         if (!isAborted.get()) {
+            Log.e("Parsing Error for " + clazz + " in request " + request.toString(), e);
+         }
+      } finally {
+         if (listener != null) {
+            listener.parseEnd(request);
+         }
       }
    }
 
    /**
-    * @return
+    * Send the result of the failed or cancelled request. The status of the cancelled request is not taken from the aborted connection.
     */
-   private boolean isCorrectClass() {
-      if (InputStreamDataInterface.class.isAssignableFrom(clazz)) {
-         return true;
-      } else if (StringDataInterface.class.isAssignableFrom(clazz)) {
-         return true;
-      } else if (AbstractProcessor.class.isAssignableFrom(clazz)) {
-         return true;
+   private void sendFailure() {
+      if (isAborted.get()) {
+         sendMessage(cancelStatus, null, cancelMessage);
       } else {
-         return false;
+         int status = request.getStatusCode();
+         fireCallFailed(status);
+         sendMessage(status, null, request.getStatusMessage());
+      }
+   }
+
+   private void fireCallFailed(int status) {
+      EventListener listener = request.getEventListener();
+      if (listener != null) {
+         listener.callFailed(request, status);
+      }
+   }
+
+   private void finish() {
+      try {
+         if (inputStream != null) {
+            inputStream.close();
+         }
+         request.close();
+      } catch (Exception e) {
+         Log.e(e);
+      }
+      if (metrics != null) {
+         int status = isAborted.get() ? cancelStatus : request.getStatusCode();
+         addTime(Phase.CACHE_WRITE, request.getCacheWriteTime());
+         if (cacheFileStream != null) {
+            addTime(Phase.CACHE_WRITE, cacheFileStream.getWriteTime());
+         }
+         metrics.setResult(status, getReceivedBytes(), request.getTransferredBytes(), retryCount);
+         finishMetricsPart();
+      }
+      if (DataProcessor.getInstance().getConfiguration().isLogEnabled() && DataProcessor.getInstance().getConfiguration().isShowProcessingTime()) {
+         long time = System.currentTimeMillis() - request.getStartTime();
+         int status = isAborted.get() ? cancelStatus : request.getStatusCode();
+         Log.v(LOADING_TIME + time + MS + request + END_STRING + " status:" + status + getBytesInfo() + getSpeedInfo() + (resumedOffset > 0 ? " resumed:" + resumedOffset : "") + (retryCount > 0 ? " retries:" + retryCount : ""));
+      }
+      request.dismissProgressDialog();
+   }
+
+   /**
+    * Start the collection of the request metrics if there are metrics listeners.
+    */
+   private void startMetrics() {
+      if (dataProcessor == null || !dataProcessor.getMetrics().isEnabled()) {
+         return;
+      }
+      metrics = new RequestMetrics(request.getTag(), queueWaitTime);
+      if (isCallbackReported) {
+         metrics.finishPart();
+      }
+   }
+
+   private void addTime(Phase phase, long time) {
+      if (metrics != null) {
+         metrics.addTime(phase, time);
+      }
+   }
+
+   /**
+    * Dispatch the metrics when both the execution and the callback are finished.
+    */
+   private void finishMetricsPart() {
+      RequestMetrics finished = metrics;
+      if (finished != null && finished.finishPart()) {
+         dataProcessor.getMetrics().dispatch(finished);
       }
    }
 
-   private void sendMessage(final @ConnectionConstants.ConnectionResponseCode int statusCode, final T object, final String errMessage) {
+   private String getBytesInfo() {
+      long transferred = request.getTransferredBytes();
+      if (transferred < 0 || countingStream == null || transferred == countingStream.getCount()) {
+         return "";
+      }
+      return " bytes:" + countingStream.getCount() + " transferred:" + transferred;
+   }
+
+   /**
+    * Returns the status of the request for the callback. The resumed download is reported as 200 OK, its whole content is received.
+    */
+   @ConnectionConstants.ConnectionResponseCode
+   private int getResultStatus() {
+      int status = request.getStatusCode();
+      if (status == ConnectionConstants.HTTP_PARTIAL && resumedOffset > 0) {
+         return ConnectionConstants.HTTP_OK;
+      }
+      return status;
+   }
+
+   private String getSpeedInfo() {
+      if (downloadTime <= 0 || countingStream == null) {
+         return "";
+      }
+      double speed = countingStream.getCount() * 1000.0 / downloadTime;
+      return String.format(Locale.US, " %.2f MB/s", speed);
+   }
+
+   private long getContentLength() {
+      if (isBodyBuffered) {
+         return bufferedLength;
+      }
+      if (cacheFileStream != null) {
+         return request.isStoredCompressed() || resumedOffset > 0 ? -1 : request.getContentLength();
+      }
+      if (cacheFileName != null && cacheFileName.length() > 0) {
+         File file = new File(cacheFileName);
+         return PartialFile.isStoredCompressed(file) ? -1 : file.length();
+      }
+      return request.getContentLength();
+   }
+
+   private void createProcessor() {
+      try {
+         processor = ProcessorFactory.newProcessor(clazz);
+      } catch (Exception e) {
+         Log.e(CAN_T_CREATE + clazz.getCanonicalName(), e);
+      }
+   }
+
+   private boolean isCorrectClass() {
+      if (clazz == File.class) {
+         return request.getCacheFileName() != null && request.getCacheFileName().length() > 0;
+      }
+      return ProcessorFactory.isSupported(clazz);
+   }
+
+   @SuppressWarnings("unchecked")
+   private AbstractProcessor<T> newFileProcessor(File file) {
+      return (AbstractProcessor<T>) new FileProcessor(file);
+   }
+
+   private void sendMessage(@ConnectionConstants.ConnectionResponseCode int statusCode, T object, String errMessage) {
+      if (isAborted.get()) {
+         statusCode = cancelStatus;
+         object = null;
+         errMessage = cancelMessage;
+      }
+      if (isResultSent.compareAndSet(false, true)) {
+         stopDeadline();
+         notifyCallback(statusCode, object, errMessage);
+      }
+      completeFlight(statusCode, object, errMessage);
+   }
+
+   private void notifyCallback(final @ConnectionConstants.ConnectionResponseCode int statusCode, final T object, final String errMessage) {
       setResult(object);
       setStatus(statusCode);
       setStatusMessage(errMessage);
+      final Callback<T> callback = this.callback;
+      final boolean isMeasured = !isCallbackReported;
+      isCallbackReported = true;
+      final long start = System.nanoTime();
       if (callback != null) {
          if (thread == Thread.currentThread()) {
             callback.onFinish(object, statusCode, errMessage);
+            fireCallbackDelivered(statusCode);
          } else {
             handler.post(new Runnable() {
 
                @Override
                public void run() {
                   callback.onFinish(object, statusCode, errMessage);
+                  fireCallbackDelivered(statusCode);
+                  if (isMeasured) {
+                     addTime(Phase.CALLBACK, System.nanoTime() - start);
+                     finishMetricsPart();
+                  }
                }
             });
+            return;
          }
       }
+      if (isMeasured) {
+         addTime(Phase.CALLBACK, System.nanoTime() - start);
+         finishMetricsPart();
+      }
+   }
+
+   private void fireCallbackDelivered(int statusCode) {
+      EventListener listener = request.getEventListener();
+      if (listener != null) {
+         listener.callbackDelivered(request, statusCode);
+      }
+   }
+
+   /**
+    * Joins this processor to the running equal request if coalescing is enabled and the request can be shared.
+    *
+    * @param canLead register this processor as running if there is no equal one
+    * @return true if the result will be delivered by the running processor
+    */
+   private boolean joinInFlight(boolean canLead) {
+      if (dataProcessor == null || !dataProcessor.getConfiguration().isRequestCoalescingEnabled() || !request.isSharable()) {
+         return false;
+      }
+      String key = getFlightKey();
+      boolean isJoined = dataProcessor.getInFlightRequests().join(key, this, canLead);
+      if (!isJoined && canLead) {
+         flightKey = key;
+      }
+      return isJoined;
+   }
+
+   /**
+    * Returns the key of equal requests: the identity, the result class and the encoding of the request. The cache file and its rewrite
+    * flag are added too, so the request which writes its own cache file is never answered by another one.
+    *
+    * @return coalescing key
+    */
+   private String getFlightKey() {
+      StringBuilder key = new StringBuilder(request.getIdentity());
+      key.append(' ').append(clazz.getName()).append(' ').append(request.getEncoding());
+      String fileName = request.getCacheFileName();
+      if (fileName != null && fileName.length() > 0) {
+         key.append(' ').append(request.isNeedToRewriteFile()).append(' ').append(fileName);
+      }
+      return key.toString();
+   }
+
+   /**
+    * Add the processor which will receive the result of this one.
+    *
+    * @param follower processor of the equal request
+    * @return false if this processor already finished and the follower must execute the request itself
+    */
+   synchronized boolean addFollower(Processor<T> follower) {
+      if (isFlightFinished) {
+         return false;
+      }
+      if (followers == null) {
+         followers = new ArrayList<>();
+      }
+      followers.add(follower);
+      return true;
+   }
+
+   /**
+    * Unregister this processor from running requests and fan out the result to all joined processors.
+    */
+   private void completeFlight(@ConnectionConstants.ConnectionResponseCode int statusCode, T object, String errMessage) {
+      if (flightKey == null) {
+         return;
+      }
+      dataProcessor.getInFlightRequests().remove(flightKey, this);
+      flightKey = null;
+      List<Processor<T>> joined;
+      synchronized (this) {
+         isFlightFinished = true;
+         joined = followers;
+         followers = null;
+      }
+      if (joined != null) {
+         for (Processor<T> follower : joined) {
+            follower.deliver(statusCode, object, errMessage);
+         }
+      }
+   }
+
+   /**
+    * Deliver the result received by the equal running request.
+    */
+   private void deliver(@ConnectionConstants.ConnectionResponseCode int statusCode, T object, String errMessage) {
+      sendMessage(statusCode, object, errMessage);
+      request.dismissProgressDialog();
+      if (joinLatch != null) {
+         joinLatch.countDown();
+      }
    }
 
    private void setStatusMessage(String message) {
@@ -246,43 +753,350 @@ public class Processor<T> {
       return request.getStatusMessage();
    }
 
-   public void executeAsync() {
+   /**
+    * Execute the request in the thread pool.
+    *
+    * @return handle to cancel the request
+    */
+   public RequestHandle executeAsync() {
       request.showProgressDialog();
-      Runnable runnable = new Runnable() {
+      startDeadline();
+      if (joinInFlight(false)) {
+         return getHandle();
+      }
+      PriorityTask runnable = new PriorityTask(request.getPriority()) {
 
          @Override
          public void run() {
-            execute();
+            if (isCancelled.get()) {
+               request.dismissProgressDialog();
+               return;
+            }
+            synchronized (Processor.this) {
+               runningThread = Thread.currentThread();
+            }
+            try {
+               isAsync = true;
+               queueWaitTime = System.nanoTime() - getCreateTime();
+               execute();
+            } finally {
+               synchronized (Processor.this) {
+                  runningThread = null;
+                  Thread.interrupted();
+               }
+            }
+         }
+
+         @Override
+         public void onRejected() {
+            if (dataProcessor.getConfiguration().isLogEnabled()) {
+               Log.w(REQUEST_REJECTED + ": " + request);
+            }
+            fireCallFailed(ConnectionConstants.REQUEST_REJECTED);
+            sendMessage(ConnectionConstants.REQUEST_REJECTED, null, REQUEST_REJECTED);
+            request.dismissProgressDialog();
          }
 
       };
+      task = runnable;
       DataProcessorThreadPool pool = dataProcessor.getThreadPool();
       if (pool != null) {
          pool.execute(runnable);
       } else {
          new Thread(runnable, DataProcessingThreadFactory.THREAD_NAME).start();
       }
+      return getHandle();
    }
 
+   /**
+    * Open the existing cache file, or start the request and save the response to the cache file while it is parsed. The response is
+    * written to the partial file which replaces the cache file only when the whole response is received, so the incomplete file is
+    * never used as the cache. The resumed response is parsed after the already received part. The error responses are parsed but not
+    * saved.
+    *
+    * @throws IOException if the request fails or the partial file can not be created
+    */
    private void saveToFile() throws IOException {
-      File f = new File(cacheFileName);
+      final File f = new File(cacheFileName);
       if (!request.isNeedToRewriteFile() && f.exists() && f.length() > 0) {
          if (DataProcessor.getInstance().getConfiguration().isLogEnabled()) {
             Log.w(FILE_EXIST + cacheFileName);
          }
+         request.setCacheFileResponse();
+         inputStream = ContentDecoder.openFile(f, PartialFile.isStoredCompressed(f), DataProcessor.getInstance().getConfiguration().getFileMappingLimit());
+         return;
+      }
+      final PartialFile partial = new PartialFile(f, request.isResumable());
+      request.setStoreCompressedAllowed(true);
+      InputStream response = openCacheFileResponse(partial);
+      if (!isCacheFileResponse(response)) {
+         inputStream = response;
+         return;
+      }
+      FileOutputStream out = openOutput(partial, response);
+      resumedOffset = partial.getOffset();
+      cacheFileStream = new TeeInputStream(response, out) {
+
+         @Override
+         protected void onComplete() throws IOException {
+            partial.commit();
+            EventListener listener = request.getEventListener();
+            if (listener != null) {
+               listener.responseBodyEnd(request, f.length());
+            }
+         }
+
+         @Override
+         protected void onAbort() {
+            partial.abort();
+         }
+
+      };
+      InputStream content = cacheFileStream;
+      if (resumedOffset > 0) {
+         content = new SequenceInputStream(new FileInputStream(partial.getPartFile()), cacheFileStream);
+      }
+      if (request.isStoredCompressed()) {
+         inputStream = ContentDecoder.decode(content, ContentDecoder.GZIP);
+      } else {
+         inputStream = content;
+      }
+   }
+
+   /**
+    * Download the response to the cache file by the file channel without the parsing. The file is the result of the request, so it is
+    * always stored decoded. The existing cache file is returned without the request if it is not rewritten and not stored compressed.
+    * The response is written to the partial file which replaces the cache file when the whole response is received. The download
+    * interrupted after the progress is retried from the received position.
+    *
+    * @throws IOException if the request fails or the file can not be written
+    */
+   private void downloadToFile() throws IOException {
+      File f = new File(cacheFileName);
+      isResumeProgress = false;
+      if (!request.isNeedToRewriteFile() && f.exists() && f.length() > 0 && !PartialFile.isStoredCompressed(f)) {
+         if (DataProcessor.getInstance().getConfiguration().isLogEnabled()) {
+            Log.w(FILE_EXIST + cacheFileName);
+         }
+         request.setCacheFileResponse();
+         downloadedFile = f;
          return;
       }
-      FileOutputStream out = new FileOutputStream(cacheFileName);
-      byte[] buffer = new byte[BUFFER];
-      int bytesRead = -1;
-      inputStream = request.getInputStream();
-      while ((bytesRead = inputStream.read(buffer)) != -1) {
-         out.write(buffer, 0, bytesRead);
+      PartialFile partial = new PartialFile(f, request.isResumable());
+      request.setStoreCompressedAllowed(false);
+      InputStream response = openCacheFileResponse(partial);
+      if (!isCacheFileResponse(response)) {
+         inputStream = response;
+         return;
+      }
+      FileOutputStream out = openOutput(partial, response);
+      resumedOffset = partial.getOffset();
+      boolean isSaved = false;
+      try {
+         countingStream = new CountingInputStream(response);
+         inputStream = countingStream;
+         ReadableByteChannel source = Channels.newChannel(new CancelableInputStream(countingStream, isAborted));
+         FileChannel target = out.getChannel();
+         long start = System.nanoTime();
+         long position = target.size();
+         long count;
+         while ((count = target.transferFrom(source, position, TRANSFER_WINDOW)) > 0) {
+            position += count;
+         }
+         downloadTime = System.nanoTime() - start;
+         addTime(Phase.DOWNLOAD, downloadTime);
+         inputStream.close();
+         inputStream = null;
+         out.close();
+         partial.commit();
+         isSaved = true;
+      } finally {
+         out.close();
+         if (!isSaved) {
+            isResumeProgress = partial.isResumable() && countingStream.getCount() > 0;
+            partial.abort();
+         }
+      }
+      EventListener listener = request.getEventListener();
+      if (listener != null) {
+         listener.responseBodyEnd(request, f.length());
+      }
+      downloadedFile = f;
+   }
+
+   /**
+    * Start the request of the cache file. The partially downloaded file is continued by the Range request, the whole response is
+    * requested again if the server can't continue it.
+    *
+    * @param partial partial file of the previous download
+    * @return response stream
+    * @throws IOException if the request fails
+    */
+   private InputStream openCacheFileResponse(PartialFile partial) throws IOException {
+      // The range of the previous execution of the same request is reset too
+      request.setResumeRange(partial.getOffset(), partial.getValidator());
+      if (partial.getOffset() > 0) {
+         if (DataProcessor.getInstance().getConfiguration().isLogEnabled()) {
+            Log.i(RESUME + cacheFileName + " from " + partial.getOffset());
+         }
+         InputStream response = request.getInputStream();
+         if (partial.isAccepted(request)) {
+            return response;
+         }
+         Log.w(RESUME_FAILED + cacheFileName + " status:" + request.getStatusCode());
+         closeResponse(response);
+         partial.delete();
+         request.setResumeRange(0, null);
+      }
+      return request.getInputStream();
+   }
+
+   private boolean isCacheFileResponse(InputStream response) {
+      int status = request.getStatusCode();
+      return response != null
+              && (status == ConnectionConstants.HTTP_OK || status == ConnectionConstants.HTTP_PARTIAL || status == ConnectionConstants.FILE_SUCCESS);
+   }
+
+   private FileOutputStream openOutput(PartialFile partial, InputStream response) throws IOException {
+      try {
+         return partial.openOutput(request);
+      } catch (IOException e) {
+         closeResponse(response);
+         throw e;
+      }
+   }
+
+   private void closeResponse(InputStream response) {
+      try {
+         if (response != null) {
+            response.close();
+         }
+         request.close();
+      } catch (Exception e) {
+         Log.e(e);
+      }
+   }
+
+   /**
+    * Read the rest of the response which is not consumed by the parser, so the cache file is completed.
+    */
+   private void completeCacheFile() {
+      TeeInputStream stream = cacheFileStream;
+      if (stream == null || stream.isComplete()) {
+         return;
+      }
+      byte[] buffer = BufferPool.acquire();
+      try {
+         while (!isAborted.get() && stream.read(buffer) != -1) {
+         }
+      } catch (IOException e) {
+         Log.w("Can't complete the cache file " + cacheFileName, e);
+      } finally {
+         BufferPool.release(buffer);
+      }
+   }
+
+   /**
+    * Returns the handle to cancel this request.
+    *
+    * @return request handle
+    */
+   public RequestHandle getHandle() {
+      return new RequestHandle(this);
+   }
+
+   /**
+    * Cancel the request. The callback receives {@link ConnectionConstants#REQUEST_CANCELLED REQUEST_CANCELLED} immediately. The waiting
+    * request is removed from the queue, the running one is disconnected and its parsing is skipped. If the equal requests are joined to
+    * this one, it continues for them and only the callback of this request is cancelled.
+    */
+   public void cancel() {
+      cancel(ConnectionConstants.REQUEST_CANCELLED, REQUEST_CANCELLED);
+   }
+
+   private void cancel(@ConnectionConstants.ConnectionResponseCode int status, String message) {
+      if (isResultSent.get() || !isCancelled.compareAndSet(false, true)) {
+         return;
+      }
+      cancelStatus = status;
+      cancelMessage = message;
+      stopDeadline();
+      fireCallFailed(status);
+      boolean hasFollowers;
+      synchronized (this) {
+         hasFollowers = followers != null && !followers.isEmpty();
+         // The aborted request doesn't take the new followers, they run it again
+         isFlightFinished = !hasFollowers;
+      }
+      String key = flightKey;
+      if (!hasFollowers && key != null) {
+         dataProcessor.getInFlightRequests().remove(key, this);
+      }
+      if (isResultSent.compareAndSet(false, true)) {
+         notifyCallback(status, null, message);
+      }
+      if (joinLatch != null) {
+         joinLatch.countDown();
+      }
+      if (hasFollowers) {
+         return;
+      }
+      isAborted.set(true);
+      synchronized (isAborted) {
+         isAborted.notifyAll();
+      }
+      DataProcessorThreadPool pool = dataProcessor.getThreadPool();
+      if (task != null && pool != null && pool.remove(task)) {
+         request.dismissProgressDialog();
+         return;
+      }
+      synchronized (this) {
+         if (runningThread != null) {
+            runningThread.interrupt();
+         }
+      }
+      dataProcessor.getScheduler().execute(new Runnable() {
+
+         @Override
+         public void run() {
+            request.cancel();
+         }
+
+      });
+   }
+
+   /**
+    * Returns whether the request is cancelled.
+    *
+    * @return is cancelled
+    */
+   public boolean isCancelled() {
+      return isCancelled.get();
+   }
+
+   private void startDeadline() {
+      long deadline = request.getDeadline();
+      if (deadline <= 0 || dataProcessor == null || deadlineFuture != null) {
+         return;
+      }
+      deadlineFuture = dataProcessor.getScheduler().schedule(new Runnable() {
+
+         @Override
+         public void run() {
+            if (dataProcessor.getConfiguration().isLogEnabled()) {
+               Log.w(DEADLINE_EXCEEDED + ": " + request);
+            }
+            cancel(ConnectionConstants.DEADLINE_EXCEEDED, DEADLINE_EXCEEDED);
+         }
+
+      }, deadline, TimeUnit.MILLISECONDS);
+   }
+
+   private void stopDeadline() {
+      ScheduledFuture<?> future = deadlineFuture;
+      if (future != null) {
+         future.cancel(false);
       }
-      out.flush();
-      out.close();
-      inputStream.close();
-      inputStream = new FileInputStream(cacheFileName);
    }
 
    public void setCallback(Callback<T> callback) {
@@ -298,6 +1112,30 @@ public class Processor<T> {
       return result;
    }
 
+   /**
+    * Returns the count of bytes passed to the parser.
+    *
+    * @return received bytes count
+    */
+   public long getReceivedBytes() {
+      if (isMappedBufferParsed) {
+         return mappedStream.length();
+      }
+      if (countingStream == null) {
+         return 0;
+      }
+      return countingStream.getCount();
+   }
+
+   /**
+    * Returns the count of retries of the request.
+    *
+    * @return retries count
+    */
+   public int getRetryCount() {
+      return retryCount;
+   }
+
    /**
     * @return
     */
@@ -305,6 +1143,15 @@ public class Processor<T> {
       return statusCode;
    }
 
+   /**
+    * Return the executing request
+    *
+    * @return request
+    */
+   public Request getRequest() {
+      return request;
+   }
+
    /**
     * Return Data class
     *
@@ -325,7 +1172,7 @@ public class Processor<T> {
     * Redelivery result in callback
     */
    public void redelivery() {
-      sendMessage(statusCode, result, getStatusMessage());
+      notifyCallback(statusCode, result, getStatusMessage());
    }
 
    private T setResult(T result) {
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface;
+import ua.at.tsvetkov.data_processor.interfaces.InstanceFactory;
+import ua.at.tsvetkov.data_processor.interfaces.StringDataInterface;
+import ua.at.tsvetkov.data_processor.processors.abstractclasses.AbstractProcessor;
+
+/**
+ * Registry of the result class factories. Each class is classified and its no-arg constructor is resolved only once, the next requests
+ * create processors without reflective lookups. A factory can be registered to skip the reflection completely.
+ *
+ * @author lordtao
+ */
+public final class ProcessorFactory {
+
+   private static final String NO_DEFAULT_CONSTRUCTOR = " has no constructor without parameters";
+
+   private static final ConcurrentHashMap<Class<?>, Creator> CREATORS = new ConcurrentHashMap<>();
+
+   private ProcessorFactory() {
+   }
+
+   /**
+    * Register the factory of the result class instances.
+    *
+    * @param clazz   class implements one of the interfaces {@link InputStreamDataInterface}, {@link StringDataInterface} or extends
+    *                {@link AbstractProcessor}
+    * @param factory factory of the class instances
+    * @param <T>     result class
+    */
+   public static <T> void register(Class<T> clazz, InstanceFactory<? extends T> factory) {
+      Kind kind = classify(clazz);
+      if (kind == Kind.UNSUPPORTED) {
+         throw new IllegalArgumentException(Processor.INVALID_CLASS_PARAMETER);
+      }
+      CREATORS.put(clazz, new Creator(kind, null, factory));
+   }
+
+   /**
+    * Remove the registered factory, the class instances will be created with its constructor.
+    *
+    * @param clazz result class
+    */
+   public static void unregister(Class<?> clazz) {
+      CREATORS.remove(clazz);
+   }
+
+   /**
+    * Returns whether the class can be processed: it implements {@link InputStreamDataInterface}, {@link StringDataInterface} or extends
+    * {@link AbstractProcessor}.
+    *
+    * @param clazz result class
+    * @return is supported
+    */
+   public static boolean isSupported(Class<?> clazz) {
+      return getCreator(clazz).kind != Kind.UNSUPPORTED;
+   }
+
+   /**
+    * Create the processor for the new instance of the result class.
+    *
+    * @param clazz result class
+    * @param <T>   result class
+    * @return new processor
+    * @throws Exception if the instance can't be created
+    */
+   @SuppressWarnings({"rawtypes", "unchecked"})
+   static <T> AbstractProcessor<T> newProcessor(Class<T> clazz) throws Exception {
+      Creator creator = getCreator(clazz);
+      switch (creator.kind) {
+         case ABSTRACT_PROCESSOR:
+            return (AbstractProcessor<T>) creator.newInstance(clazz);
+         case INPUT_STREAM_DATA:
+            return new InputStreamProcessor((InputStreamDataInterface) creator.newInstance(clazz));
+         case STRING_DATA:
+            return new StringProcessor((StringDataInterface) creator.newInstance(clazz));
+         default:
+            throw new IllegalArgumentException(Processor.INVALID_CLASS_PARAMETER);
+      }
+   }
+
+   private static Creator getCreator(Class<?> clazz) {
+      Creator creator = CREATORS.get(clazz);
+      if (creator == null) {
+         Kind kind = classify(clazz);
+         Constructor<?> constructor = null;
+         if (kind != Kind.UNSUPPORTED) {
+            try {
+               constructor = clazz.getDeclaredConstructor();
+               constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+               constructor = null;
+            }
+         }
+         creator = new Creator(kind, constructor, null);
+         Creator existing = CREATORS.putIfAbsent(clazz, creator);
+         if (existing != null) {
+            creator = existing;
+         }
+      }
+      return creator;
+   }
+
+   private static Kind classify(Class<?> clazz) {
+      if (AbstractProcessor.class.isAssignableFrom(clazz)) {
+         return Kind.ABSTRACT_PROCESSOR;
+      } else if (InputStreamDataInterface.class.isAssignableFrom(clazz)) {
+         return Kind.INPUT_STREAM_DATA;
+      } else if (StringDataInterface.class.isAssignableFrom(clazz)) {
+         return Kind.STRING_DATA;
+      } else {
+         return Kind.UNSUPPORTED;
+      }
+   }
+
+   private enum Kind {
+      ABSTRACT_PROCESSOR, INPUT_STREAM_DATA, STRING_DATA, UNSUPPORTED
+   }
+
+   private static final class Creator {
+
+      final Kind               kind;
+      final Constructor<?>     constructor;
+      final InstanceFactory<?> factory;
+
+      Creator(Kind kind, Constructor<?> constructor, InstanceFactory<?> factory) {
+         this.kind = kind;
+         this.constructor = constructor;
+         this.factory = factory;
+      }
+
+      Object newInstance(Class<?> clazz) throws Exception {
+         if (factory != null) {
+            return factory.newInstance();
+         }
+         if (constructor == null) {
+            throw new InstantiationException(clazz.getCanonicalName() + NO_DEFAULT_CONSTRUCTOR);
+         }
+         return constructor.newInstance();
+      }
+
+   }
+
+}
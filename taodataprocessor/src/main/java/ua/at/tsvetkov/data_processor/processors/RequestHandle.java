@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.processors;
+
+/**
+ * Handle of the asynchronous request, allows to cancel it.
+ *
+ * @author lordtao
+ */
+public final class RequestHandle {
+
+   /**
+    * Handle of the request which is already finished, for example the result is taken from the cache, or which can't be cancelled by the
+    * caller because the request is started by another one.
+    */
+   public static final RequestHandle FINISHED = new RequestHandle(null);
+
+   private final Processor<?> processor;
+
+   RequestHandle(Processor<?> processor) {
+      this.processor = processor;
+   }
+
+   /**
+    * Cancel the request. The callback receives {@link ua.at.tsvetkov.data_processor.helpers.ConnectionConstants#REQUEST_CANCELLED
+    * REQUEST_CANCELLED} immediately, the waiting request is removed from the queue, the running one is disconnected and its parsing is
+    * skipped. Does nothing if the request is already finished.
+    */
+   public void cancel() {
+      if (processor != null) {
+         processor.cancel();
+      }
+   }
+
+   public boolean isCancelled() {
+      return processor != null && processor.isCancelled();
+   }
+
+   public boolean isFinished() {
+      return processor == null || processor.isFinished();
+   }
+
+}
@@ -24,10 +24,15 @@
 package ua.at.tsvetkov.data_processor.processors.abstractclasses;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import ua.at.tsvetkov.data_processor.io.MappedInputStream;
 
 public abstract class AbstractProcessor<T> {
 
     private String statusMessage = "";
+    private long contentLength = -1;
+    private String encoding;
 
     /**
      * Parse the input stream with implemented parser.
@@ -37,6 +42,26 @@ public abstract class AbstractProcessor<T> {
      */
     public abstract void parse(InputStream inputStream) throws Exception;
 
+    /**
+     * Parse the content of the memory-mapped file. Called instead of {@link #parse(InputStream)} if {@link #isByteBufferSupported()}
+     * returns true and the file is mapped. By default the buffer is read as the InputStream by {@link #parse(InputStream)}.
+     *
+     * @param buffer read only buffer with the whole file content
+     * @throws Exception
+     */
+    public void parse(ByteBuffer buffer) throws Exception {
+        parse(MappedInputStream.wrap(buffer));
+    }
+
+    /**
+     * Returns whether this processor can parse the memory-mapped file from the {@link ByteBuffer}. False by default.
+     *
+     * @return is the ByteBuffer parsing supported
+     */
+    public boolean isByteBufferSupported() {
+        return false;
+    }
+
     /**
      * Returns the result of processing query.
      *
@@ -44,6 +69,42 @@ public abstract class AbstractProcessor<T> {
      */
     public abstract T getResult();
 
+    /**
+     * Set the length of the data which will be parsed. Called by the Processor before parsing.
+     *
+     * @param contentLength length in bytes or -1 if unknown
+     */
+    public void setContentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Returns the length of the data which will be parsed.
+     *
+     * @return length in bytes or -1 if unknown
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Set the encoding of the data which will be parsed. Called by the Processor before parsing.
+     *
+     * @param encoding encoding of the request
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * Returns the encoding of the data which will be parsed.
+     *
+     * @return encoding or null if unknown
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
     /**
      * Set the message about processing query.
      */
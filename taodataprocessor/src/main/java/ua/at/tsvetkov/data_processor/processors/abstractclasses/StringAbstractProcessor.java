@@ -23,11 +23,11 @@
  ******************************************************************************/
 package ua.at.tsvetkov.data_processor.processors.abstractclasses;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 
+import ua.at.tsvetkov.data_processor.helpers.Encoding;
+import ua.at.tsvetkov.data_processor.io.StreamDecoder;
 import ua.at.tsvetkov.util.Log;
 
 /**
@@ -38,28 +38,16 @@ import ua.at.tsvetkov.util.Log;
  */
 public abstract class StringAbstractProcessor<T> extends AbstractProcessor<T> {
 
+   private static final Charset DEFAULT_CHARSET = Charset.forName(Encoding.UTF_8.getString());
+
    @Override
    public void parse(InputStream inputStream) throws Exception {
       if (inputStream == null) {
          Log.w("InputStream is null. Parsing aborted.");
          return;
       }
-//        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-//        String line;
-//        StringBuffer buffer = new StringBuffer();
-//        while ((line = reader.readLine()) != null) {
-//            buffer.append(line);
-//        }
-//        process(buffer.toString().trim());
-
-      // better performance
-      ByteArrayOutputStream result = new ByteArrayOutputStream();
-      byte[]                buffer = new byte[1024];
-      int                   length;
-      while ((length = inputStream.read(buffer)) != -1) {
-         result.write(buffer, 0, length);
-      }
-      process(result.toString("UTF-8"));
+      // Decoded directly into the pre-sized buffer, the only copy is made by process(String)
+      process(StreamDecoder.decode(inputStream, getContentLength(), getCharset()));
    }
 
    @Override
@@ -72,4 +60,27 @@ public abstract class StringAbstractProcessor<T> extends AbstractProcessor<T> {
     */
    public abstract void process(String src) throws Exception;
 
+   /**
+    * Processing the received chars. By default converts them to String and calls {@link #process(String)}. Override it to process the
+    * data without the copy into String. The chars are valid only during this call.
+    *
+    * @param src decoded data
+    */
+   public void process(CharSequence src) throws Exception {
+      process(src.toString());
+   }
+
+   private Charset getCharset() {
+      String encoding = getEncoding();
+      if (encoding == null) {
+         return DEFAULT_CHARSET;
+      }
+      try {
+         return Charset.forName(encoding);
+      } catch (IllegalArgumentException e) {
+         Log.w("Unsupported encoding " + encoding + ", UTF-8 is used.");
+         return DEFAULT_CHARSET;
+      }
+   }
+
 }
@@ -93,6 +93,11 @@ public class AssetsRequest extends Request {
         return this;
     }
 
+    @Override
+    public boolean isSharable() {
+        return true;
+    }
+
     @Override
     public AssetsRequest addProgressDialog(Context context, String title, String message) {
         setupProgress(context, title, message);
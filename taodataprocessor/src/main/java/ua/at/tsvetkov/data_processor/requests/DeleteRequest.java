@@ -28,7 +28,6 @@ import android.content.Context;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.util.HashMap;
 
 import ua.at.tsvetkov.data_processor.helpers.Scheme;
@@ -55,10 +54,7 @@ public class DeleteRequest extends WebRequest {
             throw new IllegalArgumentException(REQUEST_IS_NOT_BUILDED);
         startTime = System.currentTimeMillis();
 
-        httpURLConnection = (HttpURLConnection) getURL().openConnection();
-        httpURLConnection.setRequestMethod("DELETE");
-        httpURLConnection.setReadTimeout(configuration.getTimeout());
-        httpURLConnection.setConnectTimeout(configuration.getTimeout());
+        httpURLConnection = openConnection("DELETE");
 
         printToLogUrl();
 
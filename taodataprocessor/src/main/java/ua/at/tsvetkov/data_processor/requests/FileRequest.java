@@ -30,7 +30,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import ua.at.tsvetkov.data_processor.DataProcessor;
 import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.io.MappedInputStream;
 
 /**
  * The main class for the file request building. If not specified the request be built with basic configuration parameters specified in
@@ -40,7 +42,8 @@ import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
  */
 public class FileRequest extends Request {
 
-    private FileInputStream inputStream;
+    private InputStream inputStream;
+    private File file;
 
     public FileRequest() {
 
@@ -56,17 +59,31 @@ public class FileRequest extends Request {
     }
 
     /**
-     * Starts the request and returns a response data as InputStream
+     * Starts the request and returns a response data as InputStream. The file up to
+     * {@link ua.at.tsvetkov.data_processor.DataProcessorConfiguration#getFileMappingLimit() the mapping limit} is memory-mapped.
      *
      * @return
      * @throws IOException
      */
     public InputStream getInputStream() throws IOException {
-        inputStream = new FileInputStream(new File(toString()));
+        file = new File(toString());
+        if (MappedInputStream.isMappable(file, DataProcessor.getInstance().getConfiguration().getFileMappingLimit())) {
+            inputStream = new MappedInputStream(file);
+        } else {
+            inputStream = new FileInputStream(file);
+        }
         statusCode = ConnectionConstants.FILE_SUCCESS;
         return inputStream;
     }
 
+    @Override
+    public long getContentLength() {
+        if (file == null) {
+            return -1;
+        }
+        return file.length();
+    }
+
     /**
      * Set path
      *
@@ -87,6 +104,11 @@ public class FileRequest extends Request {
         return this;
     }
 
+    @Override
+    public boolean isSharable() {
+        return true;
+    }
+
     @Override
     public FileRequest addProgressDialog(Context context, String title, String message) {
         setupProgress(context, title, message);
@@ -104,7 +126,9 @@ public class FileRequest extends Request {
      */
     @Override
     public void close() throws Exception {
-        inputStream.close();
+        if (inputStream != null) {
+            inputStream.close();
+        }
     }
 
 }
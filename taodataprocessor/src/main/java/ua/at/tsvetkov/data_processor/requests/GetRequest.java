@@ -28,9 +28,9 @@ import android.content.Context;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 import ua.at.tsvetkov.data_processor.helpers.Scheme;
 
@@ -42,6 +42,8 @@ import ua.at.tsvetkov.data_processor.helpers.Scheme;
 public class GetRequest extends WebRequest {
 
     private HashMap<String, String> requestProperties = new HashMap<String, String>();
+    private boolean isDiskCacheEnabled = true;
+    private boolean isResumeEnabled = true;
 
     /**
      * Return new instance of GetRequest.
@@ -59,15 +61,52 @@ public class GetRequest extends WebRequest {
         }
         startTime = System.currentTimeMillis();
 
-        httpURLConnection = (HttpURLConnection) getURL().openConnection();
-        httpURLConnection.setRequestMethod("GET");
-        httpURLConnection.setReadTimeout(configuration.getTimeout());
-        httpURLConnection.setConnectTimeout(configuration.getTimeout());
+        InputStream cached = getCachedStream();
+        if (cached != null) {
+            printToLogUrl();
+            return cached;
+        }
+
+        httpURLConnection = openConnection("GET");
         setRequestProperties();
+        addCacheValidators();
 
         printToLogUrl();
 
-        return getStream();
+        BufferedInputStream stream = getStream();
+        if (isCachedBodyEvicted()) {
+            httpURLConnection.disconnect();
+            httpURLConnection = openConnection("GET");
+            setRequestProperties();
+            stream = getStream();
+        }
+        return stream;
+    }
+
+    @Override
+    public String getIdentity() {
+        if (requestProperties.isEmpty()) {
+            return super.getIdentity();
+        }
+        return super.getIdentity() + ' ' + new TreeMap<String, String>(requestProperties);
+    }
+
+    @Override
+    public boolean isSharable() {
+        return true;
+    }
+
+    @Override
+    protected boolean isDiskCacheable() {
+        return isDiskCacheEnabled;
+    }
+
+    /**
+     * The interrupted download to the cache file is continued by the Range request if it is enabled.
+     */
+    @Override
+    public boolean isResumable() {
+        return isResumeEnabled;
     }
 
     // ********************************************************************************
@@ -90,6 +129,30 @@ public class GetRequest extends WebRequest {
         return this;
     }
 
+    /**
+     * Enables storing of the response in the http disk cache if it is configured in
+     * {@link ua.at.tsvetkov.data_processor.DataProcessorConfiguration DataProcessorConfiguration}. True by default.
+     *
+     * @param isEnabled is the http disk cache enabled for this request
+     * @return
+     */
+    public GetRequest setDiskCacheEnabled(boolean isEnabled) {
+        isDiskCacheEnabled = isEnabled;
+        return this;
+    }
+
+    /**
+     * Enables continuing of the interrupted download to the cache file (see saveToCacheFile methods). The received part is kept with the
+     * response validator and the rest is requested by the Range request. True by default.
+     *
+     * @param isEnabled is the resuming enabled for this request
+     * @return
+     */
+    public GetRequest setResumeEnabled(boolean isEnabled) {
+        isResumeEnabled = isEnabled;
+        return this;
+    }
+
     /**
      * Directly assign full URL string. All other URL methods will be ignored
      *
@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.requests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * Multipart/form-data request body. Parts are streamed in one pass, the files and streams are never loaded into memory. The length of the
+ * body is calculated up front if the lengths of all parts are known, so it can be sent with the fixed length streaming mode.
+ *
+ * @author lordtao
+ */
+public class MultipartBody extends RequestBody {
+
+   private static final String UTF_8                = "UTF-8";
+   private static final String CRLF                 = "\r\n";
+   private static final String DASHES               = "--";
+   private static final String MULTIPART_FORM_DATA  = "multipart/form-data; boundary=";
+   private static final String CONTENT_DISPOSITION  = "Content-Disposition: form-data; name=\"";
+   private static final String FILENAME             = "\"; filename=\"";
+   private static final String CONTENT_TYPE         = "Content-Type: ";
+   private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+   private static final String SHORT_PART           = "Part is shorter than the declared length: ";
+
+   private final String          boundary;
+   private final ArrayList<Part> parts = new ArrayList<>();
+
+   public MultipartBody() {
+      boundary = "TaoDataProcessor" + UUID.randomUUID().toString().replace("-", "");
+   }
+
+   /**
+    * Add the text field part.
+    *
+    * @param name  field name
+    * @param value field value
+    * @return this body
+    */
+   public MultipartBody addFieldPart(String name, String value) {
+      parts.add(new Part(getHeader(name, null, null), toBytes(value), null, null, -1));
+      return this;
+   }
+
+   /**
+    * Add the file part. The file name is used as the part file name.
+    *
+    * @param name        field name
+    * @param file        file
+    * @param contentType content type of the file, application/octet-stream if null
+    * @return this body
+    */
+   public MultipartBody addFilePart(String name, File file, String contentType) {
+      parts.add(new Part(getHeader(name, file.getName(), contentType), null, file, null, file.length()));
+      return this;
+   }
+
+   /**
+    * Add the part streamed from the InputStream. The stream is closed after the sending.
+    *
+    * @param name        field name
+    * @param fileName    part file name
+    * @param contentType content type of the content, application/octet-stream if null
+    * @param in          part content
+    * @param length      length of the content in bytes or -1 if unknown
+    * @return this body
+    */
+   public MultipartBody addStreamPart(String name, String fileName, String contentType, InputStream in, long length) {
+      parts.add(new Part(getHeader(name, fileName, contentType), null, null, in, length));
+      return this;
+   }
+
+   /**
+    * Returns whether no parts are added.
+    *
+    * @return is the body empty
+    */
+   public boolean isEmpty() {
+      return parts.isEmpty();
+   }
+
+   @Override
+   public long getLength() {
+      long length = 0;
+      for (Part part : parts) {
+         long partLength = part.getLength();
+         if (partLength < 0) {
+            return -1;
+         }
+         length = length + part.header.length + partLength + CRLF.length();
+      }
+      return length + getClosing().length;
+   }
+
+   @Override
+   public void writeTo(OutputStream out) throws IOException {
+      byte[] crlf = toBytes(CRLF);
+      for (Part part : parts) {
+         out.write(part.header);
+         part.writeTo(out);
+         out.write(crlf);
+      }
+      out.write(getClosing());
+   }
+
+   @Override
+   public boolean isRepeatable() {
+      for (Part part : parts) {
+         if (part.stream != null) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   @Override
+   public String getContentType() {
+      return MULTIPART_FORM_DATA + boundary;
+   }
+
+   private byte[] getHeader(String name, String fileName, String contentType) {
+      StringBuilder sb = new StringBuilder();
+      sb.append(DASHES).append(boundary).append(CRLF);
+      sb.append(CONTENT_DISPOSITION).append(escape(name));
+      if (fileName != null) {
+         sb.append(FILENAME).append(escape(fileName));
+      }
+      sb.append('"').append(CRLF);
+      if (fileName != null) {
+         sb.append(CONTENT_TYPE).append(contentType == null ? DEFAULT_CONTENT_TYPE : contentType).append(CRLF);
+      }
+      sb.append(CRLF);
+      return toBytes(sb.toString());
+   }
+
+   private byte[] getClosing() {
+      return toBytes(DASHES + boundary + DASHES + CRLF);
+   }
+
+   private static String escape(String value) {
+      return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+   }
+
+   private static byte[] toBytes(String value) {
+      try {
+         return value.getBytes(UTF_8);
+      } catch (UnsupportedEncodingException e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   private static final class Part {
+
+      private final byte[]      header;
+      private final byte[]      data;
+      private final File        file;
+      private final InputStream stream;
+      private final long        length;
+
+      private Part(byte[] header, byte[] data, File file, InputStream stream, long length) {
+         this.header = header;
+         this.data = data;
+         this.file = file;
+         this.stream = stream;
+         this.length = length;
+      }
+
+      private long getLength() {
+         if (data != null) {
+            return data.length;
+         }
+         return length;
+      }
+
+      private void writeTo(OutputStream out) throws IOException {
+         if (data != null) {
+            out.write(data);
+            return;
+         }
+         InputStream in = file != null ? new FileInputStream(file) : stream;
+         try {
+            if (length < 0) {
+               copy(in, out);
+               return;
+            }
+            // Exactly the declared length is sent even if the file grows later
+            long count = copy(in, out, length);
+            if (count < length) {
+               throw new IOException(SHORT_PART + count + " < " + length);
+            }
+         } finally {
+            in.close();
+         }
+      }
+
+   }
+
+}
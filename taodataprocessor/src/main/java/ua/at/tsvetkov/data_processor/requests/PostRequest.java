@@ -25,13 +25,10 @@ package ua.at.tsvetkov.data_processor.requests;
 
 import android.content.Context;
 
-import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Map;
@@ -44,8 +41,8 @@ public class PostRequest extends WebRequest {
 
    private HashMap<String, String> postData = new HashMap<>();
    private HashMap<String, String> requestProperties = new HashMap<>();
-   private String body;
-   private byte[] bodyB;
+   private RequestBody body;
+   private boolean isRetryEnabled;
 
    private PostRequest() {
 
@@ -68,32 +65,14 @@ public class PostRequest extends WebRequest {
       }
       startTime = System.currentTimeMillis();
 
-      String postDataString = getPostDataString();
-
-      httpURLConnection = (HttpURLConnection) getURL().openConnection();
-      httpURLConnection.setRequestMethod("POST");
+      httpURLConnection = openConnection("POST");
       httpURLConnection.setDoInput(true);
-      httpURLConnection.setDoOutput(true);
-      httpURLConnection.setChunkedStreamingMode(0);
-      httpURLConnection.setReadTimeout(configuration.getTimeout());
-      httpURLConnection.setConnectTimeout(configuration.getTimeout());
       setRequestProperties();
 
-      if (postDataString != null) {
-         httpURLConnection.setRequestProperty("Content-Length", Integer.toString(postDataString.length()));
-
-         OutputStream os = httpURLConnection.getOutputStream();
-         BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
-         writer.write(postDataString);
-         writer.flush();
-         writer.close();
-      } else if (bodyB != null) {
-         httpURLConnection.setRequestProperty("Content-Length", Integer.toString(bodyB.length));
-
-         OutputStream os = httpURLConnection.getOutputStream();
-         os.write(bodyB, 0, bodyB.length);
-         os.flush();
-         os.close();
+      if (body != null) {
+         writeBody(body);
+      } else {
+         writeBody(RequestBody.create(getPostDataString()));
       }
 
       printToLogUrl();
@@ -102,6 +81,15 @@ public class PostRequest extends WebRequest {
       return getStream();
    }
 
+   /**
+    * POST request is not idempotent and is retried only if it is enabled by {@link #setRetryEnabled(boolean)} and its body can be sent
+    * again.
+    */
+   @Override
+   public boolean isRetryAllowed() {
+      return isRetryEnabled && (body == null || body.isRepeatable());
+   }
+
    private void setRequestProperties() {
       for (Map.Entry<String, String> entry : requestProperties.entrySet()) {
          httpURLConnection.setRequestProperty(entry.getKey(), entry.getValue());
@@ -109,9 +97,6 @@ public class PostRequest extends WebRequest {
    }
 
    private String getPostDataString() {
-      if (body != null) {
-         return body;
-      }
       StringBuilder result = new StringBuilder();
       boolean first = true;
       for (Map.Entry<String, String> entry : postData.entrySet()) {
@@ -418,7 +403,7 @@ public class PostRequest extends WebRequest {
     * @return
     */
    public PostRequest addBody(String body) {
-      this.body = body;
+      this.body = RequestBody.create(body);
       return this;
    }
 
@@ -429,7 +414,112 @@ public class PostRequest extends WebRequest {
     * @return
     */
    public PostRequest addBody(byte[] body) {
-      this.bodyB = body;
+      this.body = RequestBody.create(body);
+      return this;
+   }
+
+   /**
+    * Add the text field part of the multipart/form-data body. The multipart body replaces the POST parameters and the other request bodies.
+    *
+    * @param name
+    * @param value
+    * @return
+    */
+   public PostRequest addFieldPart(String name, String value) {
+      getMultipartBody().addFieldPart(name, value);
+      return this;
+   }
+
+   /**
+    * Add the file part of the multipart/form-data body. The file is streamed, not loaded into memory.
+    *
+    * @param name
+    * @param file
+    * @param contentType content type of the file, application/octet-stream if null
+    * @return
+    */
+   public PostRequest addFilePart(String name, File file, String contentType) {
+      getMultipartBody().addFilePart(name, file, contentType);
+      return this;
+   }
+
+   /**
+    * Add the part of the multipart/form-data body streamed from the InputStream. The stream is closed after the sending.
+    *
+    * @param name
+    * @param fileName
+    * @param contentType content type of the content, application/octet-stream if null
+    * @param in
+    * @param length      length of the content in bytes or -1 if unknown, then the body is sent in chunks
+    * @return
+    */
+   public PostRequest addStreamPart(String name, String fileName, String contentType, InputStream in, long length) {
+      getMultipartBody().addStreamPart(name, fileName, contentType, in, length);
+      return this;
+   }
+
+   /**
+    * Allow to retry this request according to the retry policy. Enable it only if the server handles the repeated request safely.
+    * Disabled by default.
+    *
+    * @param isRetryEnabled is the request can be retried
+    * @return
+    */
+   public PostRequest setRetryEnabled(boolean isRetryEnabled) {
+      this.isRetryEnabled = isRetryEnabled;
+      return this;
+   }
+
+   private MultipartBody getMultipartBody() {
+      if (!(body instanceof MultipartBody)) {
+         body = new MultipartBody();
+      }
+      return (MultipartBody) body;
+   }
+
+   /**
+    * Add request body streamed from the file.
+    *
+    * @param file
+    * @return
+    */
+   public PostRequest addBody(File file) {
+      this.body = RequestBody.create(file);
+      return this;
+   }
+
+   /**
+    * Add request body streamed from the InputStream. The stream is closed after the sending.
+    *
+    * @param in
+    * @param length length of the stream content in bytes or -1 if unknown
+    * @return
+    */
+   public PostRequest addBody(InputStream in, long length) {
+      this.body = RequestBody.create(in, length);
+      return this;
+   }
+
+   /**
+    * Add request body
+    *
+    * @param body
+    * @return
+    */
+   public PostRequest addBody(RequestBody body) {
+      this.body = body;
+      return this;
+   }
+
+   /**
+    * Compress the request body with gzip and send it with the "Content-Encoding: gzip" header if the body size is not less than the given
+    * threshold. The server must support compressed requests. Disabled by default.
+    *
+    * @param minLength min body size in bytes to compress, -1 to disable
+    * @return
+    */
+   public PostRequest setBodyCompression(int minLength) {
+      this.bodyCompressionThreshold = minLength;
       return this;
    }
 
@@ -25,12 +25,9 @@ package ua.at.tsvetkov.data_processor.requests;
 
 import android.content.Context;
 
-import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -44,9 +41,10 @@ import ua.at.tsvetkov.util.Log;
  */
 public class PutRequest extends WebRequest {
 
+   private static final byte[] EMPTY_BODY = new byte[0];
+
    private HashMap<String, String> requestProperties = new HashMap<>();
-   private String body;
-   private byte[] bodyB;
+   private RequestBody body;
 
    /**
     * Return new instance of PutRequest.
@@ -64,30 +62,14 @@ public class PutRequest extends WebRequest {
       }
       startTime = System.currentTimeMillis();
 
-      httpURLConnection = (HttpURLConnection) getURL().openConnection();
-      httpURLConnection.setRequestMethod("PUT");
+      httpURLConnection = openConnection("PUT");
       httpURLConnection.setDoInput(true);
-      httpURLConnection.setDoOutput(true);
-      httpURLConnection.setChunkedStreamingMode(0);
-      httpURLConnection.setReadTimeout(configuration.getTimeout());
-      httpURLConnection.setConnectTimeout(configuration.getTimeout());
       setRequestProperties();
 
       if (body != null) {
-         httpURLConnection.setRequestProperty("Content-Length", Integer.toString(body.length()));
-
-         OutputStream os = httpURLConnection.getOutputStream();
-         BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
-         writer.write(body);
-         writer.flush();
-         writer.close();
-      } else if (bodyB != null) {
-         httpURLConnection.setRequestProperty("Content-Length", Integer.toString(bodyB.length));
-
-         OutputStream os = httpURLConnection.getOutputStream();
-         os.write(bodyB, 0, bodyB.length);
-         os.flush();
-         os.close();
+         writeBody(body);
+      } else {
+         writeBody(RequestBody.create(EMPTY_BODY));
       }
 
       printToLogUrl();
@@ -95,6 +77,14 @@ public class PutRequest extends WebRequest {
       return getStream();
    }
 
+   /**
+    * PUT request can be retried if its body can be sent again.
+    */
+   @Override
+   public boolean isRetryAllowed() {
+      return body == null || body.isRepeatable();
+   }
+
    private void setRequestProperties() {
       for (Map.Entry<String, String> entry : requestProperties.entrySet()) {
          httpURLConnection.setRequestProperty(entry.getKey(), entry.getValue());
@@ -302,6 +292,18 @@ public class PutRequest extends WebRequest {
       return this;
    }
 
+   /**
+    * Compress the request body with gzip and send it with the "Content-Encoding: gzip" header if the body size is not less than the given
+    * threshold. The server must support compressed requests. Disabled by default.
+    *
+    * @param minLength min body size in bytes to compress, -1 to disable
+    * @return
+    */
+   public PutRequest setBodyCompression(int minLength) {
+      this.bodyCompressionThreshold = minLength;
+      return this;
+   }
+
    /**
     * Add fragment.
     *
@@ -348,7 +350,7 @@ public class PutRequest extends WebRequest {
     * @return
     */
    public PutRequest addBody(String body) {
-      this.body = body;
+      this.body = RequestBody.create(body);
       return this;
    }
 
@@ -359,7 +361,41 @@ public class PutRequest extends WebRequest {
     * @return
     */
    public PutRequest addBody(byte[] body) {
-      this.bodyB = body;
+      this.body = RequestBody.create(body);
+      return this;
+   }
+
+   /**
+    * Add request body streamed from the file.
+    *
+    * @param file
+    * @return
+    */
+   public PutRequest addBody(File file) {
+      this.body = RequestBody.create(file);
+      return this;
+   }
+
+   /**
+    * Add request body streamed from the InputStream. The stream is closed after the sending.
+    *
+    * @param in
+    * @param length length of the stream content in bytes or -1 if unknown
+    * @return
+    */
+   public PutRequest addBody(InputStream in, long length) {
+      this.body = RequestBody.create(in, length);
+      return this;
+   }
+
+   /**
+    * Add request body
+    *
+    * @param body
+    * @return
+    */
+   public PutRequest addBody(RequestBody body) {
+      this.body = body;
       return this;
    }
 
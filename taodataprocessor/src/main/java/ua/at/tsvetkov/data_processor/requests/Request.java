@@ -35,10 +35,14 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
 import ua.at.tsvetkov.data_processor.DataProcessor;
 import ua.at.tsvetkov.data_processor.DataProcessorConfiguration;
 import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.helpers.Priority;
+import ua.at.tsvetkov.data_processor.metrics.EventListener;
+import ua.at.tsvetkov.data_processor.policies.RetryPolicy;
 import ua.at.tsvetkov.data_processor.helpers.Scheme;
 import ua.at.tsvetkov.util.Log;
 
@@ -56,6 +60,7 @@ public abstract class Request {
    private static final   String PASSWORD_IS_NOT_SPECIFIED = "Username is available in the request, but the password is not specified";
    protected static final String CONFIGURATION_ERROR       = "DataProcessor configuration is not initialized.";
    protected static final String REQUEST_IS_NOT_BUILDED    = "Request is not builded";
+   private static final   String CACHE_FILE_RESPONSE       = "OK";
    private static final   String AR_R                      = "\u2192";
 
    protected DataProcessorConfiguration configuration = DataProcessor.getInstance().getConfiguration();
@@ -73,7 +78,14 @@ public abstract class Request {
    protected String                  cacheFileName;
    protected String                  tag;
    protected boolean                 isRewriteFile;
+   protected boolean                 isStoreCompressedAllowed  = true;
    protected long                    startTime;
+   protected long                    cacheTtl                  = -1;
+   protected long                    cacheStaleWhileRevalidate = -1;
+   protected Priority                priority                  = Priority.NORMAL;
+   protected long                    deadline                  = -1;
+   protected RetryPolicy             retryPolicy;
+   protected EventListener           eventListener;
    @ConnectionConstants.ConnectionResponseCode
    protected int                     statusCode;
    protected String statusMessage = "";
@@ -225,6 +237,262 @@ public abstract class Request {
       return isRewriteFile;
    }
 
+   /**
+    * Answer the request by the existing cache file without the connection. Called by the Processor if the cache file is not rewritten.
+    */
+   public void setCacheFileResponse() {
+      startTime = System.currentTimeMillis();
+      EventListener listener = getEventListener();
+      if (listener != null) {
+         listener.cacheHit(this);
+      }
+      statusCode = ConnectionConstants.HTTP_OK;
+      statusMessage = CACHE_FILE_RESPONSE;
+   }
+
+   /**
+    * Returns whether the response stream is the gzip content which is saved to the cache file as is and must be decoded for the parsing.
+    * False by default.
+    *
+    * @return is the response stream compressed
+    */
+   public boolean isStoredCompressed() {
+      return false;
+   }
+
+   /**
+    * Allow or forbid to store the gzip response in the cache file as is. Called by the Processor before each execution: the file which is
+    * the result of the request must hold the decoded content.
+    *
+    * @param isAllowed is the compressed cache file allowed
+    */
+   public void setStoreCompressedAllowed(boolean isAllowed) {
+      isStoreCompressedAllowed = isAllowed;
+   }
+
+   /**
+    * Returns whether the interrupted download of the response to the cache file can be continued by the Range request. False by default.
+    *
+    * @return is the request resumable
+    */
+   public boolean isResumable() {
+      return false;
+   }
+
+   /**
+    * Request only the rest of the partially downloaded response starting from the offset, if the response is not changed. Ignored by the
+    * requests which are not {@link #isResumable() resumable}.
+    *
+    * @param offset    count of the received bytes, 0 to request the whole response
+    * @param validator If-Range validator of the received bytes (ETag or Last-Modified)
+    */
+   public void setResumeRange(long offset, String validator) {
+   }
+
+   /**
+    * Returns the value of the response header field, or null.
+    *
+    * @param name header name
+    * @return header value or null
+    */
+   public String getResponseHeader(String name) {
+      return null;
+   }
+
+   /**
+    * Set the time to live of the result in the DataProcessor result cache. Overrides the configuration values for this request.
+    *
+    * @param ttl                  time to live in milliseconds
+    * @param staleWhileRevalidate time in milliseconds after expiration during which the stale result is returned while the fresh one is
+    *                             loading
+    * @return this request
+    */
+   public Request setCacheTtl(long ttl, long staleWhileRevalidate) {
+      this.cacheTtl = ttl;
+      this.cacheStaleWhileRevalidate = staleWhileRevalidate;
+      return this;
+   }
+
+   /**
+    * Set the priority of the asynchronous execution of this request in the thread pool queue. {@link Priority#NORMAL NORMAL} by default.
+    *
+    * @param priority request priority
+    * @return this request
+    */
+   public Request setPriority(Priority priority) {
+      this.priority = priority;
+      return this;
+   }
+
+   public Priority getPriority() {
+      return priority;
+   }
+
+   /**
+    * Set the max time of the whole request execution: waiting in the queue, connection, downloading and parsing. The request is cancelled
+    * with {@link ConnectionConstants#DEADLINE_EXCEEDED DEADLINE_EXCEEDED} status when it is exceeded. Overrides the configuration value
+    * for this request.
+    *
+    * @param deadline max time in milliseconds, 0 for no deadline
+    * @return this request
+    */
+   public Request setDeadline(long deadline) {
+      this.deadline = deadline;
+      return this;
+   }
+
+   /**
+    * Returns the max time of the whole request execution.
+    *
+    * @return deadline in milliseconds, 0 for no deadline
+    */
+   public long getDeadline() {
+      return deadline < 0 ? configuration.getRequestDeadline() : deadline;
+   }
+
+   /**
+    * Set the retry policy of this request. Overrides the configuration value for this request.
+    *
+    * @param retryPolicy retry policy or {@link RetryPolicy#DISABLED} to disable retries
+    * @return this request
+    */
+   public Request setRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+   }
+
+   /**
+    * Returns the retry policy of this request.
+    *
+    * @return retry policy
+    */
+   public RetryPolicy getRetryPolicy() {
+      return retryPolicy != null ? retryPolicy : configuration.getRetryPolicy();
+   }
+
+   /**
+    * Set the listener of the lifecycle events of this request. Overrides the configuration value for this request.
+    *
+    * @param eventListener request events listener
+    * @return this request
+    */
+   public Request setEventListener(EventListener eventListener) {
+      this.eventListener = eventListener;
+      return this;
+   }
+
+   /**
+    * Returns the listener of the lifecycle events of this request.
+    *
+    * @return request events listener or null
+    */
+   public EventListener getEventListener() {
+      return eventListener != null ? eventListener : configuration.getEventListener();
+   }
+
+   /**
+    * Returns whether the failed request can be executed again. False by default.
+    *
+    * @return is the request can be retried
+    */
+   public boolean isRetryAllowed() {
+      return false;
+   }
+
+   /**
+    * Read the rest of the response which is not consumed by the parser, so the response is completely stored. Called by the Processor
+    * after the parsing. Does nothing by default.
+    */
+   public void completeResponse() {
+   }
+
+   /**
+    * Abort the running request from the other thread. Does nothing by default.
+    */
+   public void cancel() {
+   }
+
+   /**
+    * Returns the time to live of the result in the DataProcessor result cache.
+    *
+    * @return time to live in milliseconds
+    */
+   public long getCacheTtl() {
+      return cacheTtl < 0 ? configuration.getCacheTtl() : cacheTtl;
+   }
+
+   /**
+    * Returns the time after expiration during which the stale result is returned while the fresh one is loading.
+    *
+    * @return stale-while-revalidate time in milliseconds
+    */
+   public long getCacheStaleWhileRevalidate() {
+      return cacheStaleWhileRevalidate < 0 ? configuration.getCacheStaleWhileRevalidate() : cacheStaleWhileRevalidate;
+   }
+
+   /**
+    * Returns the encoding of the request data.
+    *
+    * @return encoding
+    */
+   public String getEncoding() {
+      return encoding != null ? encoding : configuration.getEncoding();
+   }
+
+   /**
+    * Returns the length of the response data if it is known.
+    *
+    * @return length in bytes or -1 if unknown
+    */
+   public long getContentLength() {
+      return -1;
+   }
+
+   /**
+    * Returns the time of the connection to the host of the last attempt, or 0 if unknown.
+    *
+    * @return connection time in nanoseconds
+    */
+   public long getConnectTime() {
+      return 0;
+   }
+
+   /**
+    * Returns the time from the sent request to the response headers of the last attempt, or 0 if unknown.
+    *
+    * @return time to first byte in nanoseconds
+    */
+   public long getResponseWaitTime() {
+      return 0;
+   }
+
+   /**
+    * Returns the time of writing the response to the http disk cache, or 0 if it is not cached.
+    *
+    * @return cache write time in nanoseconds
+    */
+   public long getCacheWriteTime() {
+      return 0;
+   }
+
+   /**
+    * Returns the log tag of the request, or null.
+    *
+    * @return request tag
+    */
+   public String getTag() {
+      return tag;
+   }
+
+   /**
+    * Returns the count of bytes received from the network before the content decoding, or -1 if unknown.
+    *
+    * @return transferred bytes count or -1
+    */
+   public long getTransferredBytes() {
+      return -1;
+   }
+
    /**
     * Return start processing time
     *
@@ -271,6 +539,41 @@ public abstract class Request {
       statusMessage = message;
    }
 
+   /**
+    * Returns the normalized identity of the request: request type and URL with sorted query parameters. Equal requests have equal
+    * identity regardless of the order in which parameters were added.
+    *
+    * @return request identity
+    */
+   public String getIdentity() {
+      if (!isBuild()) {
+         throw new IllegalArgumentException(REQUEST_IS_NOT_BUILDED);
+      }
+      StringBuilder identity = new StringBuilder(getClass().getSimpleName());
+      identity.append(' ');
+      if (url != null || queries == null) {
+         identity.append(sb);
+      } else {
+         identity.append(sb, 0, sb.indexOf("?"));
+         identity.append(new TreeMap<String, String>(queries));
+         if (fragment != null) {
+            identity.append('#');
+            identity.append(fragment);
+         }
+      }
+      return identity.toString();
+   }
+
+   /**
+    * Returns whether concurrent executions of requests with equal {@link #getIdentity() identity} may share one response. Only requests
+    * without side effects may be shared, false by default.
+    *
+    * @return is the response can be shared
+    */
+   public boolean isSharable() {
+      return false;
+   }
+
    /**
     * Generate URL
     *
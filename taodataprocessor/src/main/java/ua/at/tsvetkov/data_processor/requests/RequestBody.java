@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.requests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import ua.at.tsvetkov.data_processor.interfaces.BodyWriter;
+import ua.at.tsvetkov.data_processor.io.BufferPool;
+
+/**
+ * Body of the POST and PUT requests. The body is streamed into the connection, sources with the known length are sent with the fixed
+ * length streaming mode.
+ *
+ * @author lordtao
+ */
+public abstract class RequestBody {
+
+   private static final String UTF_8        = "UTF-8";
+   private static final String FILE_CHANGED = "File is changed during the sending: ";
+
+   /**
+    * Returns the length of the body in bytes.
+    *
+    * @return length in bytes or -1 if unknown
+    */
+   public abstract long getLength();
+
+   /**
+    * Write the body to the connection stream.
+    *
+    * @param out connection stream
+    * @throws IOException if the body can not be written
+    */
+   public abstract void writeTo(OutputStream out) throws IOException;
+
+   /**
+    * Returns whether the body can be written more than once, for example on the request retry. True by default.
+    *
+    * @return is the body repeatable
+    */
+   public boolean isRepeatable() {
+      return true;
+   }
+
+   /**
+    * Returns the Content-Type of the body, or null to leave it to the request properties.
+    *
+    * @return content type or null
+    */
+   public String getContentType() {
+      return null;
+   }
+
+   /**
+    * Create the body from the byte array.
+    *
+    * @param data body content
+    * @return request body
+    */
+   public static RequestBody create(final byte[] data) {
+      return new RequestBody() {
+
+         @Override
+         public long getLength() {
+            return data.length;
+         }
+
+         @Override
+         public void writeTo(OutputStream out) throws IOException {
+            out.write(data, 0, data.length);
+         }
+
+      };
+   }
+
+   /**
+    * Create the body from the string encoded in UTF-8.
+    *
+    * @param data body content
+    * @return request body
+    */
+   public static RequestBody create(String data) {
+      try {
+         return create(data.getBytes(UTF_8));
+      } catch (UnsupportedEncodingException e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   /**
+    * Create the body from the file. The file is transferred through its FileChannel without copying to the heap. The length of the file is
+    * taken once, exactly this count of bytes is sent even if the file grows later.
+    *
+    * @param file body content
+    * @return request body
+    */
+   public static RequestBody create(final File file) {
+      final long length = file.length();
+      return new RequestBody() {
+
+         @Override
+         public long getLength() {
+            return length;
+         }
+
+         @Override
+         public void writeTo(OutputStream out) throws IOException {
+            FileInputStream in = new FileInputStream(file);
+            try {
+               FileChannel channel = in.getChannel();
+               WritableByteChannel target = Channels.newChannel(out);
+               long position = 0;
+               while (position < length) {
+                  long sent = channel.transferTo(position, length - position, target);
+                  if (sent <= 0) {
+                     throw new IOException(FILE_CHANGED + file);
+                  }
+                  position += sent;
+               }
+            } finally {
+               in.close();
+            }
+         }
+
+      };
+   }
+
+   /**
+    * Create the body from the stream. The stream is read once and closed, so the body is not repeatable.
+    *
+    * @param in     body content
+    * @param length length of the content in bytes or -1 if unknown
+    * @return request body
+    */
+   public static RequestBody create(final InputStream in, final long length) {
+      return new RequestBody() {
+
+         @Override
+         public long getLength() {
+            return length;
+         }
+
+         @Override
+         public void writeTo(OutputStream out) throws IOException {
+            try {
+               copy(in, out);
+            } finally {
+               in.close();
+            }
+         }
+
+         @Override
+         public boolean isRepeatable() {
+            return false;
+         }
+
+      };
+   }
+
+   /**
+    * Create the body generated by the writer.
+    *
+    * @param length length of the content in bytes or -1 if unknown
+    * @param writer body writer, must write exactly length bytes if the length is known
+    * @return request body
+    */
+   public static RequestBody create(final long length, final BodyWriter writer) {
+      return new RequestBody() {
+
+         @Override
+         public long getLength() {
+            return length;
+         }
+
+         @Override
+         public void writeTo(OutputStream out) throws IOException {
+            writer.writeTo(out);
+         }
+
+      };
+   }
+
+   /**
+    * Copy the stream with the pooled buffer.
+    *
+    * @param in  source
+    * @param out target
+    * @return count of copied bytes
+    * @throws IOException if the copying fails
+    */
+   static long copy(InputStream in, OutputStream out) throws IOException {
+      byte[] buffer = BufferPool.acquire();
+      try {
+         long count = 0;
+         int read;
+         while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            count += read;
+         }
+         return count;
+      } finally {
+         BufferPool.release(buffer);
+      }
+   }
+
+   /**
+    * Copy at most the limit count of bytes of the stream with the pooled buffer, the rest of the stream is not read.
+    *
+    * @param in    source
+    * @param out   target
+    * @param limit max count of bytes
+    * @return count of copied bytes, less than the limit if the stream is ended before
+    * @throws IOException if the copying fails
+    */
+   static long copy(InputStream in, OutputStream out, long limit) throws IOException {
+      byte[] buffer = BufferPool.acquire();
+      try {
+         long count = 0;
+         int read;
+         while (count < limit && (read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - count))) != -1) {
+            out.write(buffer, 0, read);
+            count += read;
+         }
+         return count;
+      } finally {
+         BufferPool.release(buffer);
+      }
+   }
+
+}
@@ -26,9 +26,24 @@ package ua.at.tsvetkov.data_processor.requests;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.zip.GZIPOutputStream;
 
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.cache.HttpDiskCache;
 import ua.at.tsvetkov.data_processor.helpers.ConnectionConstants;
+import ua.at.tsvetkov.data_processor.io.BufferPool;
+import ua.at.tsvetkov.data_processor.io.ContentDecoder;
+import ua.at.tsvetkov.data_processor.io.CountingInputStream;
+import ua.at.tsvetkov.data_processor.io.PooledBufferedInputStream;
+import ua.at.tsvetkov.data_processor.io.TeeInputStream;
+import ua.at.tsvetkov.data_processor.metrics.EventListener;
+import ua.at.tsvetkov.data_processor.policies.CircuitBreaker;
+import ua.at.tsvetkov.data_processor.policies.CircuitBreakerPolicy;
 import ua.at.tsvetkov.util.Log;
 
 /**
@@ -40,23 +55,380 @@ import ua.at.tsvetkov.util.Log;
  */
 public abstract class WebRequest extends Request {
 
-   protected HttpURLConnection httpURLConnection;
+   private static final String CACHED_RESPONSE        = "OK";
+   private static final String CACHED_BODY_EVICTED    = "The cached response is evicted, repeat without validators: ";
+   private static final String ACCEPT_ENCODING        = "Accept-Encoding";
+   private static final String RANGE                  = "Range";
+   private static final String IF_RANGE               = "If-Range";
+   private static final String BYTES                  = "bytes=";
+   private static final String CONTENT_ENCODING       = "Content-Encoding";
+   private static final String CONTENT_TYPE           = "Content-Type";
+   private static final String CIRCUIT_IS_OPEN        = "Circuit is open for ";
+   private static final String NO_INTERNET_CONNECTION = "No internet connection.";
+
+   protected volatile HttpURLConnection httpURLConnection;
+   protected HttpDiskCache.Entry cacheEntry;
+   protected boolean             isCachedResponse;
+   protected String              contentEncoding;
+   protected boolean             isContentDecoded;
+   protected int                 bodyCompressionThreshold = -1;
+   private CountingInputStream   transferredStream;
+   private CircuitBreaker        circuitBreaker;
+   private long                  circuitPermit;
+   private boolean               isCircuitOpen;
+   private volatile boolean      isCancelled;
+   private boolean               isConnected;
+   private boolean               isConnectFailed;
+   private long                  connectTime;
+   private long                  requestSentTime;
+   private long                  responseWaitTime;
+   private TeeInputStream        cacheStream;
+   private boolean               isCachedBodyEvicted;
+   private long                  resumeOffset;
+   private String                resumeValidator;
 
    public WebRequest() {
 
    }
 
-   protected BufferedInputStream getStream() {
+   /**
+    * Open the connection to the request URL with the given method, configured timeouts and the Accept-Encoding header if the response
+    * compression is enabled in the configuration. Fails immediately if the circuit breaker of the host is open.
+    *
+    * @param method http method
+    * @return not connected yet connection
+    * @throws IOException if the connection can not be opened
+    */
+   protected HttpURLConnection openConnection(String method) throws IOException {
+      contentEncoding = null;
+      isContentDecoded = false;
+      transferredStream = null;
+      isConnected = false;
+      isConnectFailed = false;
+      connectTime = 0;
+      responseWaitTime = 0;
+      cacheStream = null;
+      isCachedBodyEvicted = false;
+      releaseCircuit(true);
+      URL url = getURL();
+      CircuitBreakerPolicy policy = configuration.getCircuitBreakerPolicy();
+      if (policy.isEnabled() && url != null) {
+         CircuitBreaker breaker = DataProcessor.getInstance().getCircuitBreakers().get(url.getAuthority(), policy);
+         long permit = breaker.tryAcquire();
+         if (permit == CircuitBreaker.NO_PERMIT) {
+            isCircuitOpen = true;
+            statusCode = ConnectionConstants.CIRCUIT_OPEN;
+            statusMessage = CIRCUIT_IS_OPEN + url.getAuthority();
+            throw new IOException(statusMessage);
+         }
+         circuitBreaker = breaker;
+         circuitPermit = permit;
+      }
+      isCircuitOpen = false;
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setRequestMethod(method);
+      connection.setReadTimeout(configuration.getTimeout());
+      connection.setConnectTimeout(configuration.getTimeout());
+      if (resumeOffset > 0 && isResumable()) {
+         // The range is counted in the bytes of the not encoded response which are saved in the partial file
+         connection.setRequestProperty(ACCEPT_ENCODING, ContentDecoder.IDENTITY);
+         connection.setRequestProperty(RANGE, BYTES + resumeOffset + "-");
+         connection.setRequestProperty(IF_RANGE, resumeValidator);
+      } else if (configuration.isResponseCompressionEnabled()) {
+         connection.setRequestProperty(ACCEPT_ENCODING, ContentDecoder.ACCEPT_ENCODING);
+      }
+      return connection;
+   }
+
+   /**
+    * Connect to the host and measure the connection time. The failure is remembered, so the status of the failed request is returned
+    * without the second connection attempt.
+    *
+    * @throws IOException if the connection is failed
+    */
+   protected void connect() throws IOException {
+      EventListener listener = getEventListener();
+      long start = System.nanoTime();
+      if (listener != null) {
+         lookup(listener, httpURLConnection.getURL().getHost());
+         listener.connectStart(this);
+      }
+      try {
+         httpURLConnection.connect();
+      } catch (IOException e) {
+         isConnectFailed = true;
+         throw e;
+      } finally {
+         connectTime = System.nanoTime() - start;
+      }
+      isConnected = true;
+      requestSentTime = System.nanoTime();
+      if (listener != null) {
+         listener.connectEnd(this);
+      }
+   }
+
+   /**
+    * Resolve the host for the events listener. The result is cached by the system, so the connection does not repeat the lookup.
+    */
+   private void lookup(EventListener listener, String host) {
+      listener.dnsStart(this, host);
+      InetAddress[] addresses;
+      try {
+         addresses = InetAddress.getAllByName(host);
+      } catch (UnknownHostException e) {
+         addresses = new InetAddress[0];
+      }
+      listener.dnsEnd(this, host, addresses);
+   }
+
+   /**
+    * Stream the request body to the connection. The body of the known length is sent with the fixed length, the body of unknown length
+    * or the body which reaches the compression threshold of the request (gzip compressed) is sent in chunks.
+    *
+    * @param body request body
+    * @throws IOException if the body can not be sent
+    */
+   protected void writeBody(RequestBody body) throws IOException {
+      httpURLConnection.setDoOutput(true);
+      if (body.getContentType() != null && httpURLConnection.getRequestProperty(CONTENT_TYPE) == null) {
+         httpURLConnection.setRequestProperty(CONTENT_TYPE, body.getContentType());
+      }
+      long length = body.getLength();
+      OutputStream os;
+      if (bodyCompressionThreshold >= 0 && (length < 0 || length >= bodyCompressionThreshold)) {
+         httpURLConnection.setRequestProperty(CONTENT_ENCODING, ContentDecoder.GZIP);
+         httpURLConnection.setChunkedStreamingMode(0);
+         connect();
+         os = new GZIPOutputStream(httpURLConnection.getOutputStream(), BufferPool.BUFFER_SIZE);
+      } else if (length >= 0 && length <= Integer.MAX_VALUE) {
+         httpURLConnection.setFixedLengthStreamingMode((int) length);
+         connect();
+         os = httpURLConnection.getOutputStream();
+      } else {
+         httpURLConnection.setChunkedStreamingMode(0);
+         connect();
+         os = httpURLConnection.getOutputStream();
+      }
+      try {
+         body.writeTo(os);
+         os.flush();
+      } finally {
+         os.close();
+      }
+      requestSentTime = System.nanoTime();
+      EventListener listener = getEventListener();
+      if (listener != null) {
+         listener.requestBodyEnd(this, length);
+      }
+   }
+
+   /**
+    * Returns the response stream. The 304 response is answered by the stored body of the revalidated http disk cache entry.
+    *
+    * @return response stream, or null if the stored body is evicted (see {@link #isCachedBodyEvicted()})
+    * @throws IOException if the connection is failed
+    */
+   protected BufferedInputStream getStream() throws IOException {
+      if (!isConnected) {
+         connect();
+      }
+      int responseCode = getResponseCode();
+      responseWaitTime = System.nanoTime() - requestSentTime;
+      EventListener listener = getEventListener();
+      if (listener != null) {
+         listener.responseHeadersEnd(this, responseCode);
+      }
+      // The response which is not received is reported on the close, the cancelled one is ignored there
+      if (circuitBreaker != null && responseCode != ConnectionConstants.NO_INTERNET_CONNECTION) {
+         if (CircuitBreaker.isFailure(responseCode)) {
+            circuitBreaker.onFailure(circuitPermit);
+         } else {
+            circuitBreaker.onSuccess(circuitPermit);
+         }
+         circuitBreaker = null;
+      }
+      HttpDiskCache diskCache = getDiskCache();
+      if (diskCache != null && cacheEntry != null && getResponseCode() == ConnectionConstants.HTTP_NOT_MODIFIED) {
+         InputStream cached = diskCache.open(cacheEntry);
+         if (cached == null) {
+            Log.w(CACHED_BODY_EVICTED + this);
+            diskCache.remove(getIdentity());
+            cacheEntry = null;
+            isCachedBodyEvicted = true;
+            return null;
+         }
+         diskCache.update(cacheEntry, httpURLConnection);
+         setCachedResponse();
+         return new PooledBufferedInputStream(cached);
+      }
       InputStream stream = null;
+      IOException exception = null;
       try {
          stream = httpURLConnection.getInputStream();
-      } catch (Exception e) {
+      } catch (IOException e) {
+         exception = e;
          Log.w("Using ErrorStream data");
       }
-      if (stream == null) {
+      boolean isErrorStream = stream == null;
+      if (isErrorStream) {
          stream = httpURLConnection.getErrorStream();
+         if (stream == null && exception != null && getResponseCode() == ConnectionConstants.NO_INTERNET_CONNECTION) {
+            throw exception;
+         }
+      }
+      if (stream != null) {
+         transferredStream = new CountingInputStream(stream);
+         stream = transferredStream;
+         contentEncoding = httpURLConnection.getContentEncoding();
+         if (ContentDecoder.isSupported(contentEncoding)) {
+            if (isStoredCompressed()) {
+               return new PooledBufferedInputStream(stream);
+            }
+            stream = ContentDecoder.decode(stream, contentEncoding);
+            isContentDecoded = true;
+         }
+      }
+      if (!isErrorStream && diskCache != null && getResponseCode() == ConnectionConstants.HTTP_OK) {
+         stream = diskCache.put(getIdentity(), httpURLConnection, stream);
+         if (stream instanceof TeeInputStream) {
+            cacheStream = (TeeInputStream) stream;
+         }
+      }
+      return new PooledBufferedInputStream(stream);
+   }
+
+   /**
+    * The gzip response saved to the cache file is stored as is if it is enabled in the configuration and allowed for this execution, it is
+    * decoded on reading.
+    */
+   @Override
+   public boolean isStoredCompressed() {
+      return cacheFileName != null && isStoreCompressedAllowed && configuration.isStoreCompressedFiles() && contentEncoding != null
+              && ContentDecoder.GZIP.equalsIgnoreCase(contentEncoding.trim());
+   }
+
+   @Override
+   public void setResumeRange(long offset, String validator) {
+      resumeOffset = validator != null ? offset : 0;
+      resumeValidator = validator;
+   }
+
+   @Override
+   public String getResponseHeader(String name) {
+      HttpURLConnection connection = httpURLConnection;
+      if (isCachedResponse || isCircuitOpen || isConnectFailed || connection == null) {
+         return null;
+      }
+      return connection.getHeaderField(name);
+   }
+
+   @Override
+   public void setCacheFileResponse() {
+      super.setCacheFileResponse();
+      isCachedResponse = true;
+   }
+
+   /**
+    * Returns whether the response of this request can be stored in the http disk cache. False by default.
+    *
+    * @return is the response can be cached
+    */
+   protected boolean isDiskCacheable() {
+      return false;
+   }
+
+   /**
+    * Returns the fresh response from the http disk cache without network, or null. The expired response with validators is remembered
+    * for the revalidation by {@link #addCacheValidators()}.
+    *
+    * @return cached response or null
+    */
+   protected InputStream getCachedStream() {
+      cacheEntry = null;
+      isCachedResponse = false;
+      HttpDiskCache diskCache = getDiskCache();
+      if (diskCache == null) {
+         return null;
+      }
+      HttpDiskCache.Entry entry = diskCache.get(getIdentity());
+      if (entry == null) {
+         return null;
+      }
+      if (entry.isFresh()) {
+         InputStream cached = diskCache.open(entry);
+         if (cached != null) {
+            setCachedResponse();
+            return new PooledBufferedInputStream(cached);
+         }
+      } else if (entry.hasValidators()) {
+         cacheEntry = entry;
+      }
+      return null;
+   }
+
+   /**
+    * Add If-None-Match / If-Modified-Since headers of the expired cached response to the not connected yet connection.
+    */
+   protected void addCacheValidators() {
+      if (cacheEntry != null) {
+         HttpDiskCache.addValidators(cacheEntry, httpURLConnection);
+      }
+   }
+
+   /**
+    * Returns whether the server answered 304 Not Modified but the stored body is already evicted from the http disk cache. The entry
+    * is removed and the request must be repeated without the validators.
+    *
+    * @return is the cached body evicted
+    */
+   protected boolean isCachedBodyEvicted() {
+      return isCachedBodyEvicted;
+   }
+
+   /**
+    * Report the outcome of the request which failed before the response to the circuit breaker.
+    *
+    * @param isIgnored the outcome is unknown because the request is cancelled
+    */
+   private void releaseCircuit(boolean isIgnored) {
+      CircuitBreaker breaker = circuitBreaker;
+      if (breaker != null) {
+         circuitBreaker = null;
+         if (isIgnored) {
+            breaker.onIgnored(circuitPermit);
+         } else {
+            breaker.onFailure(circuitPermit);
+         }
+      }
+   }
+
+   private HttpDiskCache getDiskCache() {
+      if (!isDiskCacheable()) {
+         return null;
+      }
+      return DataProcessor.getInstance().getHttpDiskCache();
+   }
+
+   private void setCachedResponse() {
+      EventListener listener = getEventListener();
+      if (listener != null) {
+         listener.cacheHit(this);
+      }
+      isCachedResponse = true;
+      statusCode = ConnectionConstants.HTTP_OK;
+      statusMessage = CACHED_RESPONSE;
+   }
+
+   private int getResponseCode() {
+      if (isConnectFailed) {
+         return ConnectionConstants.NO_INTERNET_CONNECTION;
+      }
+      try {
+         return httpURLConnection.getResponseCode();
+      } catch (IOException e) {
+         return ConnectionConstants.NO_INTERNET_CONNECTION;
       }
-      return new BufferedInputStream(stream);
    }
 
    @Override
@@ -72,9 +444,53 @@ public abstract class WebRequest extends Request {
     */
    @Override
    public void close() throws Exception {
-      httpURLConnection.disconnect();
+      releaseCircuit(isCancelled);
+      if (httpURLConnection != null) {
+         httpURLConnection.disconnect();
+      }
+   }
+
+
+   /**
+    * Web requests are idempotent and can be retried by default.
+    */
+   @Override
+   public boolean isRetryAllowed() {
+      return true;
+   }
+
+   /**
+    * The parser may stop at the end of the data before the end of the response, the rest is read so the response is stored in the http
+    * disk cache.
+    */
+   @Override
+   public void completeResponse() {
+      TeeInputStream stream = cacheStream;
+      if (stream == null || stream.isComplete()) {
+         return;
+      }
+      byte[] buffer = BufferPool.acquire();
+      try {
+         while (!isCancelled && stream.read(buffer) != -1) {
+         }
+      } catch (IOException e) {
+         Log.w("Can't complete the http cache entry " + this, e);
+      } finally {
+         BufferPool.release(buffer);
+      }
    }
 
+   /**
+    * Disconnect the running request, the blocked reading fails immediately.
+    */
+   @Override
+   public void cancel() {
+      isCancelled = true;
+      HttpURLConnection connection = httpURLConnection;
+      if (connection != null) {
+         connection.disconnect();
+      }
+   }
 
    /**
     * TODO
@@ -85,8 +501,56 @@ public abstract class WebRequest extends Request {
       return httpURLConnection;
    }
 
+   @Override
+   public long getContentLength() {
+      if (isCachedResponse || isContentDecoded || httpURLConnection == null) {
+         return -1;
+      }
+      return httpURLConnection.getContentLength();
+   }
+
+   /**
+    * Returns the Content-Encoding of the response, or null.
+    *
+    * @return content encoding
+    */
+   public String getContentEncoding() {
+      return contentEncoding;
+   }
+
+   @Override
+   public long getConnectTime() {
+      return connectTime;
+   }
+
+   @Override
+   public long getResponseWaitTime() {
+      return responseWaitTime;
+   }
+
+   @Override
+   public long getCacheWriteTime() {
+      TeeInputStream stream = cacheStream;
+      return stream == null ? 0 : stream.getWriteTime();
+   }
+
+   @Override
+   public long getTransferredBytes() {
+      if (transferredStream == null) {
+         return -1;
+      }
+      return transferredStream.getCount();
+   }
+
    @Override
    public int getStatusCode() {
+      if (isCachedResponse || isCircuitOpen) {
+         return statusCode;
+      }
+      if (isConnectFailed) {
+         statusCode = ConnectionConstants.NO_INTERNET_CONNECTION;
+         return statusCode;
+      }
       try {
          statusCode = httpURLConnection.getResponseCode();
       } catch (IOException e) {
@@ -98,12 +562,18 @@ public abstract class WebRequest extends Request {
 
    @Override
    public String getStatusMessage() {
+      if (isCachedResponse || isCircuitOpen) {
+         return statusMessage;
+      }
+      if (isConnectFailed) {
+         return NO_INTERNET_CONNECTION;
+      }
       String message = "";
       try {
          message = httpURLConnection.getResponseMessage();
       } catch (IOException e) {
          Log.e("IO error during the retrieval response message.", e);
-         message = "No internet connection.";
+         message = NO_INTERNET_CONNECTION;
       }
       return message;
    }
@@ -7,7 +7,10 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import ua.at.tsvetkov.data_processor.DataProcessor;
+import ua.at.tsvetkov.data_processor.DataProcessorConfiguration;
 import ua.at.tsvetkov.data_processor.interfaces.StringDataInterface;
+import ua.at.tsvetkov.data_processor.policies.ResponseLogPolicy;
 import ua.at.tsvetkov.util.Log;
 
 /**
@@ -48,12 +51,19 @@ public abstract class JSONDataAbstract implements StringDataInterface {
     @Override
     public void fillFromString(String src) throws Exception {
         setIndentSpaces(indentSpaces);
+        ResponseLogPolicy logPolicy = getResponseLogPolicy();
         if (src.startsWith("{")) {
-            JSONObject jsonObject = null;
             try {
-                jsonObject = new JSONObject(src);
-                if (isShowObjectInLog) {
-                    Log.v(JSON_DATA_FOR + getClass().getSimpleName() + DEVIDER_1 + jsonObject.toString(indentSpaces) + END_OF_JSON_DATA_FOR + getClass().getSimpleName() + DEVIDER_1);
+                final JSONObject jsonObject = new JSONObject(src);
+                if (isShowObjectInLog && logPolicy.isLoggable()) {
+                    logPolicy.log(JSON_DATA_FOR + getClass().getSimpleName() + DEVIDER_1, src, new ResponseLogPolicy.Formatter() {
+
+                        @Override
+                        public String format(String body) throws Exception {
+                            return jsonObject.toString(indentSpaces);
+                        }
+
+                    }, END_OF_JSON_DATA_FOR + getClass().getSimpleName() + DEVIDER_1);
                 }
                 parse(jsonObject);
             } catch (Exception e) {
@@ -61,11 +71,17 @@ public abstract class JSONDataAbstract implements StringDataInterface {
                 setMessage(SERVER_SENT_WRONG_DATA);
             }
         } else if (src.startsWith("[")) {
-            JSONArray jsonArray = null;
             try {
-                jsonArray = new JSONArray(src);
-                if (isShowObjectInLog) {
-                    Log.v(JSON_DATA_FOR + getClass().getSimpleName() + DEVIDER_1 + jsonArray.toString(indentSpaces) + END_OF_JSON_DATA_FOR + getClass().getSimpleName() + DEVIDER_1);
+                final JSONArray jsonArray = new JSONArray(src);
+                if (isShowObjectInLog && logPolicy.isLoggable()) {
+                    logPolicy.log(JSON_DATA_FOR + getClass().getSimpleName() + DEVIDER_1, src, new ResponseLogPolicy.Formatter() {
+
+                        @Override
+                        public String format(String body) throws Exception {
+                            return jsonArray.toString(indentSpaces);
+                        }
+
+                    }, END_OF_JSON_DATA_FOR + getClass().getSimpleName() + DEVIDER_1);
                 }
                 parse(jsonArray);
             } catch (Exception e) {
@@ -78,8 +94,18 @@ public abstract class JSONDataAbstract implements StringDataInterface {
         }
     }
 
+    private static ResponseLogPolicy getResponseLogPolicy() {
+        DataProcessorConfiguration configuration = DataProcessor.getInstance().getConfiguration();
+        if (configuration == null) {
+            return ResponseLogPolicy.DEFAULT;
+        }
+        return configuration.getResponseLogPolicy();
+    }
+
     /**
-     * Enables printout obtained JSON object to the log, true by default. Must be set up in constructor.
+     * Enables printout obtained JSON object to the log, true by default. The output is limited by
+     * {@link ua.at.tsvetkov.data_processor.policies.ResponseLogPolicy ResponseLogPolicy} of the configuration. Must be set up in
+     * constructor.
      *
      * @param isShow
      */
@@ -0,0 +1,120 @@
+/**
+ *
+ */
+package ua.at.tsvetkov.data_processor.templates;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import ua.at.tsvetkov.data_processor.interfaces.InputStreamDataInterface;
+import ua.at.tsvetkov.util.Log;
+
+/**
+ * Streaming JSON template. Parses the response directly from the InputStream with Jackson {@link JsonParser} without building the String
+ * and the JSON tree, so large documents are parsed in constant memory. Override {@link #onField(String, JsonParser)} for the fields of the
+ * root object or {@link #onArrayItem(int, JsonParser)} for the items of the root array.
+ *
+ * @author Alexandr Tsvetkov 2015
+ */
+public abstract class JSONStreamDataAbstract implements InputStreamDataInterface {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String SERVER_SENT_WRONG_DATA = "Server sent wrong data.";
+
+    private String message = "Empty message";
+    private boolean isSuccess = false;
+
+    @Override
+    public void fillFromInputStream(InputStream in) throws IOException {
+        JsonParser parser = JSON_FACTORY.createParser(in);
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    onField(name, parser);
+                    parser.skipChildren();
+                }
+            } else if (token == JsonToken.START_ARRAY) {
+                int index = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    onArrayItem(index++, parser);
+                    parser.skipChildren();
+                }
+            } else {
+                setMessage(SERVER_SENT_WRONG_DATA);
+                Log.w("Not JSON data received, first token: " + token);
+            }
+        } catch (JsonProcessingException e) {
+            Log.e(this, "Wrong JSON data", e);
+            setMessage(SERVER_SENT_WRONG_DATA);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Called for each field of the root JSON object. The parser is positioned at the field value. If the value is an object or an array
+     * it can be read with the parser up to its end token, otherwise it is skipped.
+     *
+     * @param name   field name
+     * @param parser parser positioned at the field value
+     * @throws IOException
+     */
+    protected void onField(String name, JsonParser parser) throws IOException {
+    }
+
+    /**
+     * Called for each item of the root JSON array. The parser is positioned at the item value. If the value is an object or an array it
+     * can be read with the parser up to its end token, otherwise it is skipped.
+     *
+     * @param index  item index
+     * @param parser parser positioned at the item value
+     * @throws IOException
+     */
+    protected void onArrayItem(int index, JsonParser parser) throws IOException {
+    }
+
+    /**
+     * Return error or another message about request result
+     *
+     * @return a message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Set error or another message about request result
+     *
+     * @param msg a message
+     */
+    public void setMessage(String msg) {
+        message = msg;
+    }
+
+    /**
+     * Is the request was successful
+     *
+     * @return is the request was successful
+     */
+    public boolean isSuccess() {
+        return isSuccess;
+    }
+
+    /**
+     * Assign the result of a successful request
+     *
+     * @param isSuccess is the request was successful
+     */
+    public void setSuccess(boolean isSuccess) {
+        this.isSuccess = isSuccess;
+    }
+
+}
@@ -37,6 +37,21 @@ public class DataProcessingThreadFactory implements ThreadFactory {
      */
     private static final int THREAD_PRIORITY = 4;
     public static final String THREAD_NAME = "Data Processor async request";
+    public static final String PARSER_THREAD_NAME = "Data Processor parser";
+    public static final String SCHEDULER_THREAD_NAME = "Data Processor scheduler";
+
+    private final String name;
+
+    public DataProcessingThreadFactory() {
+        this(THREAD_NAME);
+    }
+
+    /**
+     * @param name name of the created threads
+     */
+    public DataProcessingThreadFactory(String name) {
+        this.name = name;
+    }
 
     /*
      * (non-Javadoc)
@@ -46,7 +61,7 @@ public class DataProcessingThreadFactory implements ThreadFactory {
     public Thread newThread(Runnable r) {
         Thread thread = new Thread(r);
         thread.setPriority(THREAD_PRIORITY);
-        thread.setName(THREAD_NAME);
+        thread.setName(name);
         thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
 
             @Override
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Alexandr Tsvetkov.
+ * Copyright (c) 2014 Alexandr Tsvetkov.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the GNU Lesser General Public License
  * which accompanies this distribution, and is available at
@@ -9,7 +9,7 @@
  * Alexandr Tsvetkov - initial API and implementation
  * <p/>
  * Project:
- * tao-data-processor
+ * TAO Data Processor
  * <p/>
  * License agreement:
  * <p/>
@@ -23,18 +23,188 @@
  ******************************************************************************/
 package ua.at.tsvetkov.data_processor.threads;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ua.at.tsvetkov.data_processor.helpers.Priority;
+import ua.at.tsvetkov.data_processor.policies.RejectionPolicy;
 
 /**
+ * Fixed thread pool over the bounded priority queue. Tasks are executed in the order of their {@link Priority}, the task submitted to the
+ * full queue is handled by the {@link RejectionPolicy}.
+ *
  * @author lordtao
  */
 public class DataProcessorThreadPool extends ThreadPoolExecutor {
 
+    public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private static final String TASK_REJECTED = "Task is rejected, the queue is full";
+
+    private final RejectionPolicy rejectionPolicy;
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
     public DataProcessorThreadPool() {
-        super(Runtime.getRuntime().availableProcessors() * 2, Runtime.getRuntime().availableProcessors() * 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
-                new DataProcessingThreadFactory());
+        this(DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY, RejectionPolicy.DROP_OLDEST_PREFETCH);
+    }
+
+    /**
+     * @param poolSize        count of threads
+     * @param queueCapacity   max count of waiting tasks
+     * @param rejectionPolicy action on the submission to the full queue
+     */
+    public DataProcessorThreadPool(int poolSize, int queueCapacity, RejectionPolicy rejectionPolicy) {
+        super(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new PriorityTaskQueue(queueCapacity), new DataProcessingThreadFactory(),
+                new RejectionHandler());
+        this.rejectionPolicy = rejectionPolicy;
+    }
+
+    /**
+     * Execute the task. Tasks other than {@link PriorityTask} are executed with the {@link Priority#NORMAL NORMAL} priority.
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (command instanceof PriorityTask) {
+            super.execute(command);
+        } else {
+            super.execute(new RunnableTask(command));
+        }
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable runnable) {
+        super.beforeExecute(thread, runnable);
+        long wait = System.nanoTime() - ((PriorityTask) runnable).getCreateTime();
+        executedCount.incrementAndGet();
+        waitTime.addAndGet(wait);
+        long max = maxWaitTime.get();
+        while (wait > max && !maxWaitTime.compareAndSet(max, wait)) {
+            max = maxWaitTime.get();
+        }
+    }
+
+    private void reject(PriorityTask task) {
+        if (!isShutdown()) {
+            if (rejectionPolicy == RejectionPolicy.CALLER_RUNS) {
+                task.run();
+                return;
+            }
+            if (rejectionPolicy == RejectionPolicy.DROP_OLDEST_PREFETCH) {
+                PriorityTaskQueue queue = (PriorityTaskQueue) getQueue();
+                PriorityTask dropped = queue.removeOldestPrefetch();
+                if (dropped != null) {
+                    droppedCount.incrementAndGet();
+                    dropped.onRejected();
+                    if (queue.offer(task)) {
+                        return;
+                    }
+                }
+            }
+        }
+        rejectedCount.incrementAndGet();
+        task.onRejected();
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    /**
+     * Returns the count of tasks waiting in the queue.
+     *
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return ((PriorityTaskQueue) getQueue()).getCapacity();
+    }
+
+    /**
+     * Returns the average time from the task submission to the start of its execution.
+     *
+     * @return average wait time in milliseconds
+     */
+    public long getAverageWaitTime() {
+        long count = executedCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(waitTime.get() / count);
+    }
+
+    /**
+     * Returns the max time from the task submission to the start of its execution.
+     *
+     * @return max wait time in milliseconds
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+
+    /**
+     * Returns the count of tasks rejected on the submission.
+     *
+     * @return rejected count
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns the count of prefetch tasks dropped from the queue by {@link RejectionPolicy#DROP_OLDEST_PREFETCH}.
+     *
+     * @return dropped count
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "DataProcessorThreadPool [queueDepth=" + getQueueDepth() + ", queueCapacity=" + getQueueCapacity() + ", averageWaitTime="
+                + getAverageWaitTime() + ", maxWaitTime=" + getMaxWaitTime() + ", rejected=" + rejectedCount + ", dropped=" + droppedCount
+                + "]";
+    }
+
+    private static final class RejectionHandler implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            ((DataProcessorThreadPool) executor).reject((PriorityTask) runnable);
+        }
+
+    }
+
+    private static final class RunnableTask extends PriorityTask {
+
+        private final Runnable runnable;
+
+        private RunnableTask(Runnable runnable) {
+            super(Priority.NORMAL);
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+
+        @Override
+        public void onRejected() {
+            throw new RejectedExecutionException(TASK_REJECTED);
+        }
+
     }
 
 }
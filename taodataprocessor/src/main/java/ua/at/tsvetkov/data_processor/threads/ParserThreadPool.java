@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.threads;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread pool for the CPU bound parsing of the responses downloaded by the {@link DataProcessorThreadPool}. It is sized to the count of
+ * processors. When the queue is full the parsing is executed by the downloading thread, so the downloads slow down instead of buffering
+ * more responses in memory.
+ *
+ * @author lordtao
+ */
+public class ParserThreadPool extends ThreadPoolExecutor {
+
+    public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param poolSize count of threads
+     */
+    public ParserThreadPool(int poolSize) {
+        super(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(poolSize * 2),
+                new DataProcessingThreadFactory(DataProcessingThreadFactory.PARSER_THREAD_NAME), new CallerRunsHandler());
+    }
+
+    /**
+     * Unlike {@link ThreadPoolExecutor.CallerRunsPolicy} runs the task after the shutdown too, the result must be delivered anyway.
+     */
+    private static final class CallerRunsHandler implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            runnable.run();
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.threads;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import ua.at.tsvetkov.data_processor.helpers.Priority;
+
+/**
+ * Task of the {@link DataProcessorThreadPool}. Tasks are ordered by priority and then by the order of creation.
+ *
+ * @author lordtao
+ */
+public abstract class PriorityTask implements Runnable, Comparable<PriorityTask> {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final Priority priority;
+    private final long sequence;
+    private final long createTime;
+
+    public PriorityTask(Priority priority) {
+        this.priority = priority == null ? Priority.NORMAL : priority;
+        this.sequence = SEQUENCE.getAndIncrement();
+        this.createTime = System.nanoTime();
+    }
+
+    /**
+     * Called instead of {@link #run()} if the task is rejected or dropped from the queue.
+     */
+    public abstract void onRejected();
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns the time of the task creation by {@link System#nanoTime()}.
+     *
+     * @return creation time in nanoseconds
+     */
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    @Override
+    public int compareTo(PriorityTask another) {
+        int result = priority.compareTo(another.priority);
+        if (result != 0) {
+            return result;
+        }
+        return sequence < another.sequence ? -1 : (sequence == another.sequence ? 0 : 1);
+    }
+
+    boolean isOlderThan(PriorityTask another) {
+        return sequence < another.sequence;
+    }
+
+}
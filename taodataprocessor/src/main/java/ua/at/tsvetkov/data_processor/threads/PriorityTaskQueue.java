@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Alexandr Tsvetkov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * <p/>
+ * Contributors:
+ * Alexandr Tsvetkov - initial API and implementation
+ * <p/>
+ * Project:
+ * TAO Data Processor
+ * <p/>
+ * License agreement:
+ * <p/>
+ * 1. This code is published AS IS. Author is not responsible for any damage that can be
+ * caused by any application that uses this code.
+ * 2. Author does not give a garantee, that this code is error free.
+ * 3. This code can be used in NON-COMMERCIAL applications AS IS without any special
+ * permission from author.
+ * 4. This code can be modified without any special permission from author IF AND ONLY IF
+ * this license agreement will remain unchanged.
+ ******************************************************************************/
+package ua.at.tsvetkov.data_processor.threads;
+
+import java.util.concurrent.PriorityBlockingQueue;
+
+import ua.at.tsvetkov.data_processor.helpers.Priority;
+
+/**
+ * Bounded priority queue of {@link PriorityTask}s.
+ *
+ * @author lordtao
+ */
+public class PriorityTaskQueue extends PriorityBlockingQueue<Runnable> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+
+    public PriorityTaskQueue(int capacity) {
+        super(Math.min(capacity, 64));
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized boolean offer(Runnable task) {
+        if (size() >= capacity) {
+            return false;
+        }
+        return super.offer(task);
+    }
+
+    /**
+     * Remove the oldest queued {@link Priority#PREFETCH PREFETCH} task.
+     *
+     * @return removed task or null if there is no prefetch task in the queue
+     */
+    synchronized PriorityTask removeOldestPrefetch() {
+        PriorityTask oldest = null;
+        for (Runnable runnable : this) {
+            PriorityTask task = (PriorityTask) runnable;
+            if (task.getPriority() == Priority.PREFETCH && (oldest == null || task.isOlderThan(oldest))) {
+                oldest = task;
+            }
+        }
+        if (oldest != null && remove(oldest)) {
+            return oldest;
+        }
+        return null;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+
+}